@@ -0,0 +1,175 @@
+package com.unact.yandexmapkit;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Uniform grid index over bounding boxes of map objects.
+ *
+ * Every entry is stored in all grid cells its bounding box covers.
+ * Entries covering too many cells are kept in a separate list, which is always scanned.
+ */
+public class YandexGeoIndex {
+  private static final double CELL_SIZE = 0.05;
+  private static final int MAX_ENTRY_CELLS = 64;
+
+  private final Map<Long, List<Entry>> cells = new HashMap<>();
+  private final List<Entry> largeEntries = new ArrayList<>();
+  private final Map<Object, Entry> entries = new HashMap<>();
+
+  public static class Entry {
+    public final Object key;
+    public final Object value;
+    public final double minLatitude;
+    public final double minLongitude;
+    public final double maxLatitude;
+    public final double maxLongitude;
+
+    Entry(Object key, Object value, double minLatitude, double minLongitude, double maxLatitude, double maxLongitude) {
+      this.key = key;
+      this.value = value;
+      this.minLatitude = minLatitude;
+      this.minLongitude = minLongitude;
+      this.maxLatitude = maxLatitude;
+      this.maxLongitude = maxLongitude;
+    }
+
+    public boolean isPoint() {
+      return minLatitude == maxLatitude && minLongitude == maxLongitude;
+    }
+
+    boolean intersects(double minLatitude, double minLongitude, double maxLatitude, double maxLongitude) {
+      return this.minLatitude <= maxLatitude && this.maxLatitude >= minLatitude &&
+        this.minLongitude <= maxLongitude && this.maxLongitude >= minLongitude;
+    }
+  }
+
+  public void put(Object key, double minLatitude, double minLongitude, double maxLatitude, double maxLongitude) {
+    put(key, null, minLatitude, minLongitude, maxLatitude, maxLongitude);
+  }
+
+  /**
+   * Puts an entry with a {@code value} returned along with it by queries, replacing an entry with the same key
+   */
+  public void put(
+    Object key,
+    Object value,
+    double minLatitude,
+    double minLongitude,
+    double maxLatitude,
+    double maxLongitude
+  ) {
+    remove(key);
+
+    Entry entry = new Entry(key, value, minLatitude, minLongitude, maxLatitude, maxLongitude);
+    int minX = cell(minLongitude);
+    int maxX = cell(maxLongitude);
+    int minY = cell(minLatitude);
+    int maxY = cell(maxLatitude);
+
+    entries.put(key, entry);
+
+    if ((long) (maxX - minX + 1) * (maxY - minY + 1) > MAX_ENTRY_CELLS) {
+      largeEntries.add(entry);
+      return;
+    }
+
+    for (int x = minX; x <= maxX; x++) {
+      for (int y = minY; y <= maxY; y++) {
+        long cellKey = cellKey(x, y);
+        List<Entry> cellEntries = cells.get(cellKey);
+
+        if (cellEntries == null) {
+          cellEntries = new ArrayList<>();
+          cells.put(cellKey, cellEntries);
+        }
+
+        cellEntries.add(entry);
+      }
+    }
+  }
+
+  public void remove(Object key) {
+    Entry entry = entries.remove(key);
+
+    if (entry == null) return;
+
+    if (largeEntries.remove(entry)) return;
+
+    for (int x = cell(entry.minLongitude); x <= cell(entry.maxLongitude); x++) {
+      for (int y = cell(entry.minLatitude); y <= cell(entry.maxLatitude); y++) {
+        long cellKey = cellKey(x, y);
+        List<Entry> cellEntries = cells.get(cellKey);
+
+        if (cellEntries != null) {
+          cellEntries.remove(entry);
+
+          if (cellEntries.isEmpty()) {
+            cells.remove(cellKey);
+          }
+        }
+      }
+    }
+  }
+
+  public void clear() {
+    cells.clear();
+    largeEntries.clear();
+    entries.clear();
+  }
+
+  public List<Entry> query(double minLatitude, double minLongitude, double maxLatitude, double maxLongitude) {
+    Map<Entry, Boolean> found = new IdentityHashMap<>();
+    int minX = cell(minLongitude);
+    int maxX = cell(maxLongitude);
+    int minY = cell(minLatitude);
+    int maxY = cell(maxLatitude);
+
+    if ((long) (maxX - minX + 1) * (maxY - minY + 1) > cells.size()) {
+      for (List<Entry> cellEntries : cells.values()) {
+        collect(cellEntries, found, minLatitude, minLongitude, maxLatitude, maxLongitude);
+      }
+    } else {
+      for (int x = minX; x <= maxX; x++) {
+        for (int y = minY; y <= maxY; y++) {
+          List<Entry> cellEntries = cells.get(cellKey(x, y));
+
+          if (cellEntries != null) {
+            collect(cellEntries, found, minLatitude, minLongitude, maxLatitude, maxLongitude);
+          }
+        }
+      }
+    }
+
+    collect(largeEntries, found, minLatitude, minLongitude, maxLatitude, maxLongitude);
+
+    return new ArrayList<>(found.keySet());
+  }
+
+  private static void collect(
+    Collection<Entry> cellEntries,
+    Map<Entry, Boolean> found,
+    double minLatitude,
+    double minLongitude,
+    double maxLatitude,
+    double maxLongitude
+  ) {
+    for (Entry entry : cellEntries) {
+      if (entry.intersects(minLatitude, minLongitude, maxLatitude, maxLongitude)) {
+        found.put(entry, true);
+      }
+    }
+  }
+
+  private static int cell(double degrees) {
+    return (int) Math.floor(degrees / CELL_SIZE);
+  }
+
+  private static long cellKey(int x, int y) {
+    return ((long) x << 32) | (y & 0xFFFFFFFFL);
+  }
+}
@@ -0,0 +1,288 @@
+package com.unact.yandexmapkit;
+
+import com.yandex.mapkit.geometry.LinearRing;
+import com.yandex.mapkit.geometry.Point;
+import com.yandex.mapkit.geometry.Polygon;
+import com.yandex.mapkit.geometry.Polyline;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Geodesic computations over many geometries, split into ranges which are computed in parallel.
+ *
+ * Geometries are copied into primitive arrays before computations, results are packed into primitive arrays.
+ * Callbacks are called on a pool thread, once all ranges are computed.
+ * {@code null} geometries give {@code NaN} lengths and areas and never contain points.
+ */
+public class YandexGeometryCalculator {
+  private static final double EARTH_RADIUS = 6371008.8;
+  private static final int MIN_RANGE_SIZE = 16;
+  private static final int PARALLELISM = Runtime.getRuntime().availableProcessors();
+  private static final ExecutorService executor = Executors.newFixedThreadPool(PARALLELISM);
+
+  public interface Callback<T> {
+    void onResult(T result);
+  }
+
+  interface Range {
+    void compute(int from, int to);
+  }
+
+  /**
+   * Computes lengths of polylines in meters
+   */
+  public static void polylineLengths(final List<Polyline> polylines, final Callback<double[]> callback) {
+    final double[] lengths = new double[polylines.size()];
+
+    parallelFor(polylines.size(), new Range() {
+      @Override
+      public void compute(int from, int to) {
+        for (int i = from; i < to; i++) {
+          Polyline polyline = polylines.get(i);
+
+          lengths[i] = polyline != null ? length(toCoordinates(polyline.getPoints())) : Double.NaN;
+        }
+      }
+    }, new Runnable() {
+      @Override
+      public void run() {
+        callback.onResult(lengths);
+      }
+    });
+  }
+
+  /**
+   * Computes areas of polygons in square meters, areas of inner rings are excluded
+   */
+  public static void polygonAreas(final List<Polygon> polygons, final Callback<double[]> callback) {
+    final double[] areas = new double[polygons.size()];
+
+    parallelFor(polygons.size(), new Range() {
+      @Override
+      public void compute(int from, int to) {
+        for (int i = from; i < to; i++) {
+          Polygon polygon = polygons.get(i);
+
+          if (polygon == null) {
+            areas[i] = Double.NaN;
+            continue;
+          }
+
+          double area = area(toCoordinates(polygon.getOuterRing().getPoints()));
+          for (LinearRing innerRing : polygon.getInnerRings()) {
+            area -= area(toCoordinates(innerRing.getPoints()));
+          }
+
+          areas[i] = area;
+        }
+      }
+    }, new Runnable() {
+      @Override
+      public void run() {
+        callback.onResult(areas);
+      }
+    });
+  }
+
+  /**
+   * Finds the first polygon containing every point of packed (latitude, longitude) {@code points},
+   * the result holds polygon indexes or {@code -1} for points outside of all polygons
+   */
+  public static void containingPolygons(
+    final double[] points,
+    final List<Polygon> polygons,
+    final Callback<int[]> callback
+  ) {
+    final int pointCount = points.length / 2;
+    final double[][][] rings = new double[polygons.size()][][];
+    final double[] bounds = new double[polygons.size() * 4];
+    final int[] containing = new int[pointCount];
+
+    // Rings and bounding boxes are prepared first, so every point is checked against primitive arrays only
+    parallelFor(polygons.size(), new Range() {
+      @Override
+      public void compute(int from, int to) {
+        for (int i = from; i < to; i++) {
+          Polygon polygon = polygons.get(i);
+
+          if (polygon != null) {
+            rings[i] = toRings(polygon);
+            boundingBox(rings[i][0], bounds, i * 4);
+          }
+        }
+      }
+    }, new Runnable() {
+      @Override
+      public void run() {
+        parallelFor(pointCount, new Range() {
+          @Override
+          public void compute(int from, int to) {
+            for (int i = from; i < to; i++) {
+              containing[i] = findContainingPolygon(points[i * 2], points[i * 2 + 1], rings, bounds);
+            }
+          }
+        }, new Runnable() {
+          @Override
+          public void run() {
+            callback.onResult(containing);
+          }
+        });
+      }
+    });
+  }
+
+  /**
+   * Checks if a polygon contains a point, points in inner rings are outside
+   */
+  public static boolean contains(Polygon polygon, double latitude, double longitude) {
+    double[][] rings = toRings(polygon);
+
+    if (!contains(rings[0], latitude, longitude)) return false;
+
+    for (int i = 1; i < rings.length; i++) {
+      if (contains(rings[i], latitude, longitude)) return false;
+    }
+
+    return true;
+  }
+
+  /**
+   * Splits {@code [0, count)} into ranges computed on the pool and runs {@code done} after the last one
+   */
+  static void parallelFor(final int count, final Range range, final Runnable done) {
+    int rangeCount = Math.max(1, Math.min(PARALLELISM * 4, count / MIN_RANGE_SIZE));
+    final int rangeSize = (count + rangeCount - 1) / rangeCount;
+    final AtomicInteger remaining = new AtomicInteger(rangeCount);
+
+    for (int i = 0; i < rangeCount; i++) {
+      final int from = Math.min(count, i * rangeSize);
+      final int to = Math.min(count, from + rangeSize);
+
+      executor.execute(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            range.compute(from, to);
+          } finally {
+            if (remaining.decrementAndGet() == 0) {
+              done.run();
+            }
+          }
+        }
+      });
+    }
+  }
+
+  private static int findContainingPolygon(double latitude, double longitude, double[][][] rings, double[] bounds) {
+    for (int i = 0; i < rings.length; i++) {
+      if (rings[i] == null ||
+        latitude < bounds[i * 4] || longitude < bounds[i * 4 + 1] ||
+        latitude > bounds[i * 4 + 2] || longitude > bounds[i * 4 + 3]) {
+        continue;
+      }
+
+      if (!contains(rings[i][0], latitude, longitude)) continue;
+
+      boolean inHole = false;
+      for (int j = 1; j < rings[i].length && !inHole; j++) {
+        inHole = contains(rings[i][j], latitude, longitude);
+      }
+
+      if (!inHole) return i;
+    }
+
+    return -1;
+  }
+
+  // Ray casting over latitude and longitude, matching how non geodesic polygons are drawn
+  static boolean contains(double[] ring, double latitude, double longitude) {
+    int count = ring.length / 2;
+    boolean inside = false;
+
+    for (int i = 0, j = count - 1; i < count; j = i++) {
+      double latitude1 = ring[i * 2];
+      double longitude1 = ring[i * 2 + 1];
+      double latitude2 = ring[j * 2];
+      double longitude2 = ring[j * 2 + 1];
+
+      if ((latitude1 > latitude) != (latitude2 > latitude) &&
+        longitude < (longitude2 - longitude1) * (latitude - latitude1) / (latitude2 - latitude1) + longitude1) {
+        inside = !inside;
+      }
+    }
+
+    return inside;
+  }
+
+  private static double length(double[] coordinates) {
+    double length = 0;
+
+    for (int i = 2; i < coordinates.length; i += 2) {
+      length += YandexLocationBuffer.distance(coordinates[i - 2], coordinates[i - 1], coordinates[i], coordinates[i + 1]);
+    }
+
+    return length;
+  }
+
+  // Area of a ring on a sphere, see "Some Algorithms for Polygons on a Sphere" by Chamberlain and Duquette
+  static double area(double[] ring) {
+    int count = ring.length / 2;
+    double sum = 0;
+
+    for (int i = 0; i < count; i++) {
+      int next = (i + 1) % count;
+      double dLongitude = Math.toRadians(ring[next * 2 + 1] - ring[i * 2 + 1]);
+
+      // Edges crossing the antimeridian go the short way around
+      if (dLongitude > Math.PI) {
+        dLongitude -= 2 * Math.PI;
+      } else if (dLongitude < -Math.PI) {
+        dLongitude += 2 * Math.PI;
+      }
+
+      sum += dLongitude * (2 + Math.sin(Math.toRadians(ring[i * 2])) + Math.sin(Math.toRadians(ring[next * 2])));
+    }
+
+    return Math.abs(sum * EARTH_RADIUS * EARTH_RADIUS / 2);
+  }
+
+  private static void boundingBox(double[] ring, double[] bounds, int offset) {
+    bounds[offset] = Double.POSITIVE_INFINITY;
+    bounds[offset + 1] = Double.POSITIVE_INFINITY;
+    bounds[offset + 2] = Double.NEGATIVE_INFINITY;
+    bounds[offset + 3] = Double.NEGATIVE_INFINITY;
+
+    for (int i = 0; i < ring.length; i += 2) {
+      bounds[offset] = Math.min(bounds[offset], ring[i]);
+      bounds[offset + 1] = Math.min(bounds[offset + 1], ring[i + 1]);
+      bounds[offset + 2] = Math.max(bounds[offset + 2], ring[i]);
+      bounds[offset + 3] = Math.max(bounds[offset + 3], ring[i + 1]);
+    }
+  }
+
+  private static double[][] toRings(Polygon polygon) {
+    List<LinearRing> innerRings = polygon.getInnerRings();
+    double[][] rings = new double[innerRings.size() + 1][];
+
+    rings[0] = toCoordinates(polygon.getOuterRing().getPoints());
+    for (int i = 0; i < innerRings.size(); i++) {
+      rings[i + 1] = toCoordinates(innerRings.get(i).getPoints());
+    }
+
+    return rings;
+  }
+
+  private static double[] toCoordinates(List<Point> points) {
+    double[] coordinates = new double[points.size() * 2];
+
+    for (int i = 0; i < points.size(); i++) {
+      coordinates[i * 2] = points.get(i).getLatitude();
+      coordinates[i * 2 + 1] = points.get(i).getLongitude();
+    }
+
+    return coordinates;
+  }
+}
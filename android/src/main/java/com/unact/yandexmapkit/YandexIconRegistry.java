@@ -0,0 +1,84 @@
+package com.unact.yandexmapkit;
+
+import com.yandex.runtime.image.ImageProvider;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Decoded placemark icons shared by id.
+ *
+ * Placemarks using an icon hold a reference to it. An unregistered icon is kept
+ * until the last placemark using it is removed.
+ */
+public class YandexIconRegistry {
+  private static class Icon {
+    private final ImageProvider image;
+    private int references = 0;
+    private boolean registered = true;
+
+    Icon(ImageProvider image) {
+      this.image = image;
+    }
+  }
+
+  private final Map<String, Icon> icons = new HashMap<>();
+
+  public synchronized void register(String iconId, ImageProvider image) {
+    Icon previous = icons.get(iconId);
+    Icon icon = new Icon(image);
+
+    if (previous != null) {
+      icon.references = previous.references;
+    }
+
+    icons.put(iconId, icon);
+  }
+
+  public synchronized void unregister(String iconId) {
+    Icon icon = icons.get(iconId);
+
+    if (icon != null) {
+      icon.registered = false;
+      removeUnused(iconId, icon);
+    }
+  }
+
+  public synchronized ImageProvider get(String iconId) {
+    Icon icon = icons.get(iconId);
+
+    if (icon == null || !icon.registered) {
+      throw new IllegalArgumentException("No icon registered with id " + iconId);
+    }
+
+    return icon.image;
+  }
+
+  /**
+   * Returns {@code false} if there is no icon with this id, in which case it must not be released later
+   */
+  public synchronized boolean acquire(String iconId) {
+    Icon icon = icons.get(iconId);
+
+    if (icon == null) return false;
+
+    icon.references++;
+
+    return true;
+  }
+
+  public synchronized void release(String iconId) {
+    Icon icon = icons.get(iconId);
+
+    if (icon != null) {
+      icon.references--;
+      removeUnused(iconId, icon);
+    }
+  }
+
+  private void removeUnused(String iconId, Icon icon) {
+    if (!icon.registered && icon.references <= 0) {
+      icons.remove(iconId);
+    }
+  }
+}
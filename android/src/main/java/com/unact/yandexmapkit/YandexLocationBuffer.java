@@ -0,0 +1,146 @@
+package com.unact.yandexmapkit;
+
+/**
+ * Fixed capacity ring buffer of user location fixes stored in primitive arrays.
+ *
+ * When the buffer is full the oldest fix is overwritten.
+ * Fixes are drained into a packed {@code double[]} of (latitude, longitude, accuracy, time) values,
+ * where time is in milliseconds since the epoch.
+ */
+public class YandexLocationBuffer {
+  public static final int FIX_SIZE = 4;
+
+  private static final double EARTH_RADIUS = 6371008.8;
+
+  private final double[] latitudes;
+  private final double[] longitudes;
+  private final double[] accuracies;
+  private final long[] times;
+  private int head = 0;
+  private int size = 0;
+
+  public YandexLocationBuffer(int capacity) {
+    if (capacity <= 0) {
+      throw new IllegalArgumentException("Location buffer capacity must be positive, got " + capacity);
+    }
+
+    latitudes = new double[capacity];
+    longitudes = new double[capacity];
+    accuracies = new double[capacity];
+    times = new long[capacity];
+  }
+
+  public void add(double latitude, double longitude, double accuracy, long time) {
+    int index = (head + size) % latitudes.length;
+
+    latitudes[index] = latitude;
+    longitudes[index] = longitude;
+    accuracies[index] = accuracy;
+    times[index] = time;
+
+    if (size < latitudes.length) {
+      size++;
+    } else {
+      head = (head + 1) % latitudes.length;
+    }
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public boolean isFull() {
+    return size == latitudes.length;
+  }
+
+  public double[] drain() {
+    double[] fixes = new double[size * FIX_SIZE];
+
+    for (int i = 0; i < size; i++) {
+      int index = (head + i) % latitudes.length;
+
+      fixes[i * FIX_SIZE] = latitudes[index];
+      fixes[i * FIX_SIZE + 1] = longitudes[index];
+      fixes[i * FIX_SIZE + 2] = accuracies[index];
+      fixes[i * FIX_SIZE + 3] = times[index];
+    }
+
+    head = 0;
+    size = 0;
+
+    return fixes;
+  }
+
+  /**
+   * Marks fixes kept after Douglas-Peucker simplification of packed {@code fixes}
+   * with {@code tolerance} in meters. The first and the last fixes are always kept.
+   */
+  public static boolean[] simplify(double[] fixes, double tolerance) {
+    int count = fixes.length / FIX_SIZE;
+    boolean[] kept = new boolean[count];
+
+    if (count == 0) return kept;
+
+    kept[0] = true;
+    kept[count - 1] = true;
+
+    // Explicit stack of (first, last) index ranges, as tracks can be long enough to overflow recursion
+    int[] stack = new int[Math.max(2, count * 2)];
+    int stackSize = 0;
+    stack[stackSize++] = 0;
+    stack[stackSize++] = count - 1;
+
+    while (stackSize > 0) {
+      int last = stack[--stackSize];
+      int first = stack[--stackSize];
+      double maxDistance = 0;
+      int farthest = -1;
+
+      for (int i = first + 1; i < last; i++) {
+        double distance = distanceToSegment(fixes, i, first, last);
+
+        if (distance > maxDistance) {
+          maxDistance = distance;
+          farthest = i;
+        }
+      }
+
+      if (farthest != -1 && maxDistance > tolerance) {
+        kept[farthest] = true;
+        stack[stackSize++] = first;
+        stack[stackSize++] = farthest;
+        stack[stackSize++] = farthest;
+        stack[stackSize++] = last;
+      }
+    }
+
+    return kept;
+  }
+
+  /**
+   * Returns the distance in meters between two points
+   */
+  public static double distance(double latitude1, double longitude1, double latitude2, double longitude2) {
+    double dLatitude = Math.toRadians(latitude2 - latitude1);
+    double dLongitude = Math.toRadians(longitude2 - longitude1);
+    double a = Math.sin(dLatitude / 2) * Math.sin(dLatitude / 2) +
+      Math.cos(Math.toRadians(latitude1)) * Math.cos(Math.toRadians(latitude2)) *
+      Math.sin(dLongitude / 2) * Math.sin(dLongitude / 2);
+
+    return 2 * EARTH_RADIUS * Math.asin(Math.min(1, Math.sqrt(a)));
+  }
+
+  // Fixes are close to each other, so the distance is computed on a local equirectangular projection
+  private static double distanceToSegment(double[] fixes, int index, int first, int last) {
+    double latitude = fixes[first * FIX_SIZE];
+    double scale = Math.cos(Math.toRadians(latitude));
+    double x = (fixes[index * FIX_SIZE + 1] - fixes[first * FIX_SIZE + 1]) * scale;
+    double y = fixes[index * FIX_SIZE] - latitude;
+    double dx = (fixes[last * FIX_SIZE + 1] - fixes[first * FIX_SIZE + 1]) * scale;
+    double dy = fixes[last * FIX_SIZE] - latitude;
+    double lengthSquared = dx * dx + dy * dy;
+    double t = lengthSquared > 0 ? Math.max(0, Math.min(1, (x * dx + y * dy) / lengthSquared)) : 0;
+
+    return Math.toRadians(Math.hypot(x - t * dx, y - t * dy)) * EARTH_RADIUS;
+  }
+}
@@ -0,0 +1,164 @@
+package com.unact.yandexmapkit;
+
+import android.util.Log;
+import android.view.Choreographer;
+
+import com.yandex.mapkit.Animation;
+import com.yandex.mapkit.map.CameraPosition;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Collects camera and map object commands and applies them once per frame.
+ *
+ * Camera commands issued within one frame are folded into a single camera move,
+ * an object added and removed within one frame is never created.
+ * Commands which were dropped this way are counted in {@link #getCollapsedCount()}.
+ * Method calls are completed as soon as their commands are queued, only map changes wait for the frame,
+ * so a command failing when applied can't be reported to its caller and is only logged.
+ * Must be used on the main thread.
+ */
+public class YandexMapCommandQueue implements Choreographer.FrameCallback {
+  private static final String TAG = "YandexMapCommandQueue";
+
+  public interface CameraCommand {
+    CameraPosition apply(CameraPosition cameraPosition);
+  }
+
+  /**
+   * An object addition, which is cancelled if the object is removed before the addition is applied
+   */
+  public abstract static class Addition implements Runnable {
+    public void cancel() {}
+  }
+
+  private static class ObjectCommand {
+    private final Runnable update;
+    private boolean cancelled = false;
+
+    ObjectCommand(Runnable update) {
+      this.update = update;
+    }
+  }
+
+  private final com.yandex.mapkit.map.Map map;
+  private final List<ObjectCommand> objectCommands = new ArrayList<>();
+  private final Map<Object, ObjectCommand> pendingAdditions = new HashMap<>();
+  private final List<CameraCommand> cameraCommands = new ArrayList<>();
+  private Animation cameraAnimation;
+  private boolean frameScheduled = false;
+  private long collapsedCount = 0;
+
+  public YandexMapCommandQueue(com.yandex.mapkit.map.Map map) {
+    this.map = map;
+  }
+
+  public void addObject(Object hashCode, Addition addition) {
+    ObjectCommand command = new ObjectCommand(addition);
+
+    objectCommands.add(command);
+    pendingAdditions.put(hashCode, command);
+    schedule();
+  }
+
+  public void removeObject(Object hashCode, Runnable update) {
+    ObjectCommand addition = pendingAdditions.remove(hashCode);
+
+    // The removal itself is still applied, as an object with the same hash code could have been added earlier
+    if (addition != null) {
+      addition.cancelled = true;
+      ((Addition) addition.update).cancel();
+      collapsedCount++;
+    }
+
+    objectCommands.add(new ObjectCommand(update));
+    schedule();
+  }
+
+  public void updateObjects(Runnable update) {
+    objectCommands.add(new ObjectCommand(update));
+    schedule();
+  }
+
+  /**
+   * Queues a camera move, {@code animation} can be {@code null} to move without animation.
+   */
+  public void moveCamera(CameraCommand command, Animation animation) {
+    if (!cameraCommands.isEmpty()) {
+      collapsedCount++;
+    }
+
+    cameraCommands.add(command);
+    cameraAnimation = animation;
+    schedule();
+  }
+
+  public long getCollapsedCount() {
+    return collapsedCount;
+  }
+
+  public void flush() {
+    List<ObjectCommand> appliedObjectCommands = new ArrayList<>(objectCommands);
+    List<CameraCommand> appliedCameraCommands = new ArrayList<>(cameraCommands);
+    Animation appliedCameraAnimation = cameraAnimation;
+
+    cancel();
+
+    for (ObjectCommand command : appliedObjectCommands) {
+      if (command.cancelled) continue;
+
+      // A failing command must not crash the frame or drop the commands queued after it
+      try {
+        command.update.run();
+      } catch (RuntimeException e) {
+        Log.e(TAG, "Failed to apply a map object command", e);
+      }
+    }
+
+    if (!appliedCameraCommands.isEmpty()) {
+      // Relative commands like zooming are applied on top of the commands issued before them
+      CameraPosition cameraPosition = map.getCameraPosition();
+      for (CameraCommand command : appliedCameraCommands) {
+        cameraPosition = command.apply(cameraPosition);
+      }
+
+      try {
+        if (appliedCameraAnimation != null) {
+          map.move(cameraPosition, appliedCameraAnimation, null);
+        } else {
+          map.move(cameraPosition);
+        }
+      } catch (RuntimeException e) {
+        Log.e(TAG, "Failed to apply a camera command", e);
+      }
+    }
+  }
+
+  public void cancel() {
+    if (frameScheduled) {
+      Choreographer.getInstance().removeFrameCallback(this);
+      frameScheduled = false;
+    }
+
+    objectCommands.clear();
+    pendingAdditions.clear();
+    cameraCommands.clear();
+    cameraAnimation = null;
+  }
+
+  @Override
+  public void doFrame(long frameTimeNanos) {
+    frameScheduled = false;
+    flush();
+  }
+
+  private void schedule() {
+    if (!frameScheduled) {
+      Choreographer.getInstance().postFrameCallback(this);
+      frameScheduled = true;
+    }
+  }
+}
@@ -3,6 +3,10 @@ package com.unact.yandexmapkit;
 import android.Manifest;
 import android.content.Context;
 import android.content.pm.PackageManager;
+import android.content.res.AssetFileDescriptor;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
 import android.view.View;
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
@@ -11,11 +15,19 @@ import androidx.core.app.ActivityCompat;
 
 import com.yandex.mapkit.Animation;
 import com.yandex.mapkit.MapKitFactory;
+import com.yandex.mapkit.RawTile;
+import com.yandex.mapkit.ScreenPoint;
+import com.yandex.mapkit.TileId;
+import com.yandex.mapkit.Version;
 import com.yandex.mapkit.geometry.BoundingBox;
 import com.yandex.mapkit.geometry.LinearRing;
 import com.yandex.mapkit.geometry.Polygon;
 import com.yandex.mapkit.geometry.Point;
 import com.yandex.mapkit.geometry.Polyline;
+import com.yandex.mapkit.geometry.geo.Projections;
+import com.yandex.mapkit.images.DefaultImageUrlProvider;
+import com.yandex.mapkit.layers.Layer;
+import com.yandex.mapkit.layers.LayerOptions;
 import com.yandex.mapkit.layers.ObjectEvent;
 import com.yandex.mapkit.logo.Alignment;
 import com.yandex.mapkit.logo.HorizontalAlignment;
@@ -24,6 +36,7 @@ import com.yandex.mapkit.map.CameraPosition;
 import com.yandex.mapkit.map.InputListener;
 import com.yandex.mapkit.map.MapObject;
 import com.yandex.mapkit.map.MapObjectCollection;
+import com.yandex.mapkit.map.MapObjectDragListener;
 import com.yandex.mapkit.map.MapObjectTapListener;
 import com.yandex.mapkit.map.PlacemarkMapObject;
 import com.yandex.mapkit.map.PolylineMapObject;
@@ -35,16 +48,37 @@ import com.yandex.mapkit.map.RotationType;
 import com.yandex.mapkit.map.SizeChangedListener;
 import com.yandex.mapkit.map.VisibleRegion;
 import com.yandex.mapkit.mapview.MapView;
+import com.yandex.mapkit.tiles.TileProvider;
 import com.yandex.mapkit.user_location.UserLocationLayer;
 import com.yandex.mapkit.user_location.UserLocationObjectListener;
 import com.yandex.mapkit.user_location.UserLocationView;
 import com.yandex.runtime.image.ImageProvider;
 
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.RandomAccessFile;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
 
 import io.flutter.plugin.common.BinaryMessenger;
 import io.flutter.plugin.common.MethodCall;
@@ -54,11 +88,22 @@ import io.flutter.view.FlutterMain;
 
 
 public class YandexMapController implements PlatformView, MethodChannel.MethodCallHandler {
+  private static final String TILE_CACHE_DIRECTORY = "yandex_mapkit_tiles";
+  private static final String TILE_CONTENT_TYPE = "image/png";
+  private static final int TILE_CONNECT_TIMEOUT = 10000;
+  private static final int TILE_READ_TIMEOUT = 15000;
+  private static final int IMPORT_FORMAT_BINARY = 1;
+  // Imported objects get hash codes above the range of Dart hash codes, so they never clash with objects added from Dart.
+  // Generated ids start at 2^32, ids read from the source in [0, 2^48) are offset by 2^48.
+  private static final AtomicLong importedObjectIds = new AtomicLong(1L << 32);
+  private static final long IMPORTED_ID_OFFSET = 1L << 48;
+
   private final MapView mapView;
   private final MethodChannel methodChannel;
   private YandexUserLocationObjectListener yandexUserLocationObjectListener;
   private YandexCameraListener yandexCameraListener;
   private YandexMapObjectTapListener yandexMapObjectTapListener;
+  private YandexMapObjectDragListener yandexMapObjectDragListener;
   private YandexMapInputListener yandexMapInputListener;
   private YandexMapSizeChangedListener yandexMapSizeChangedListener;
   private UserLocationLayer userLocationLayer;
@@ -66,10 +111,43 @@ public class YandexMapController implements PlatformView, MethodChannel.MethodCa
   private List<PlacemarkMapObject> placemarks = new ArrayList<>();
   private List<PolylineMapObject> polylines = new ArrayList<>();
   private List<PolygonMapObject> polygons = new ArrayList<>();
+  private Map<String, YandexTileProvider> tileProviders = new HashMap<>();
+  private Map<String, MapObjectCollection> groups = new LinkedHashMap<>();
+  private Map<Object, String> objectGroups = new HashMap<>();
+  private YandexGeoIndex geoIndex = new YandexGeoIndex();
+  private YandexStyleRegistry styleRegistry = new YandexStyleRegistry();
+  private YandexIconRegistry iconRegistry = new YandexIconRegistry();
+  private Map<Object, String> placemarkIconIds = new HashMap<>();
+  private Map<Object, Object> objectStyles = new HashMap<>();
+  private String stateKey;
+  private final ExecutorService backgroundExecutor = Executors.newSingleThreadExecutor();
+  private final ExecutorService importExecutor = Executors.newSingleThreadExecutor();
+  private final Handler mainHandler = new Handler(Looper.getMainLooper());
+  // Checked by background tasks and the runnables they post, as they can outlive the map view
+  private volatile boolean disposed = false;
+  private final YandexMapCommandQueue commandQueue;
+  private final Runnable noMapUpdate = new Runnable() {
+    @Override
+    public void run() {}
+  };
   private String userLocationIconName;
   private String userArrowIconName;
   private Boolean userArrowOrientation;
   private int accuracyCircleFillColor = 0;
+  private YandexLocationBuffer locationBuffer;
+  private long locationInterval;
+  private double locationDistance;
+  private double trackTolerance;
+  private Point locationBatchStart;
+  private Point lastLocation;
+  private PolylineMapObject track;
+  private List<Point> trackPoints;
+  private final Runnable locationFlush = new Runnable() {
+    @Override
+    public void run() {
+      flushUserLocations();
+    }
+  };
 
   public YandexMapController(int id, Context context, BinaryMessenger messenger) {
     MapKitFactory.initialize(context);
@@ -77,7 +155,9 @@ public class YandexMapController implements PlatformView, MethodChannel.MethodCa
     MapKitFactory.getInstance().onStart();
     mapView.onStart();
 
+    commandQueue = new YandexMapCommandQueue(mapView.getMap());
     yandexMapObjectTapListener = new YandexMapObjectTapListener();
+    yandexMapObjectDragListener = new YandexMapObjectDragListener();
     yandexMapInputListener = new YandexMapInputListener();
     yandexMapSizeChangedListener = new YandexMapSizeChangedListener();
     userLocationLayer = MapKitFactory.getInstance().createUserLocationLayer(mapView.getMapWindow());
@@ -87,6 +167,7 @@ public class YandexMapController implements PlatformView, MethodChannel.MethodCa
     methodChannel.setMethodCallHandler(this);
 
     mapView.getMap().addInputListener(yandexMapInputListener);
+    mapView.getMap().getMapObjects().addTapListener(yandexMapObjectTapListener);
     mapView.getMapWindow().addSizeChangedListener(yandexMapSizeChangedListener);
   }
 
@@ -97,6 +178,23 @@ public class YandexMapController implements PlatformView, MethodChannel.MethodCa
 
   @Override
   public void dispose() {
+    disposed = true;
+
+    if (stateKey != null) {
+      commandQueue.flush();
+      YandexMapState.save(stateKey, saveState());
+    }
+
+    for (YandexTileProvider tileProvider : tileProviders.values()) {
+      tileProvider.close();
+    }
+    tileProviders.clear();
+
+    backgroundExecutor.shutdownNow();
+    importExecutor.shutdownNow();
+    mainHandler.removeCallbacksAndMessages(null);
+    commandQueue.cancel();
+
     mapView.onStop();
     MapKitFactory.getInstance().onStop();
   }
@@ -147,6 +245,131 @@ public class YandexMapController implements PlatformView, MethodChannel.MethodCa
     userLocationLayer.setVisible(false);
   }
 
+  // Fixes are collected natively and sent to Dart in batches, so Dart isn't woken up on every fix
+  @SuppressWarnings("unchecked")
+  private void enableUserLocationUpdates(MethodCall call, MethodChannel.Result result) {
+    Map<String, Object> params = ((Map<String, Object>) call.arguments);
+    Map<String, Object> paramsTrackStyle = ((Map<String, Object>) params.get("trackStyle"));
+    int bufferSize = ((Number) params.get("bufferSize")).intValue();
+
+    if (bufferSize <= 0) {
+      result.error("INVALID_ARGUMENT", "bufferSize must be positive, got " + bufferSize, null);
+      return;
+    }
+
+    disableUserLocationUpdates();
+
+    locationBuffer = new YandexLocationBuffer(bufferSize);
+    locationInterval = ((Number) params.get("interval")).longValue();
+    locationDistance = ((Double) params.get("distance"));
+    trackTolerance = ((Double) params.get("trackTolerance"));
+
+    if (paramsTrackStyle != null) {
+      trackPoints = new ArrayList<>();
+      track = mapView.getMap().getMapObjects().addPolyline(new Polyline(trackPoints));
+      new YandexPolylineStyle(paramsTrackStyle).applyTo(track);
+    }
+
+    result.success(null);
+  }
+
+  private void disableUserLocationUpdates() {
+    if (locationBuffer == null) return;
+
+    flushUserLocations();
+
+    if (track != null) {
+      track.getParent().remove(track);
+      track = null;
+      trackPoints = null;
+    }
+
+    locationBuffer = null;
+    locationBatchStart = null;
+    lastLocation = null;
+  }
+
+  private void addUserLocation(UserLocationView view) {
+    if (locationBuffer == null) return;
+
+    Point point = view.getArrow().getGeometry();
+
+    // Heading changes update the view as well, they are not new fixes
+    if (point == null || (lastLocation != null &&
+      point.getLatitude() == lastLocation.getLatitude() &&
+      point.getLongitude() == lastLocation.getLongitude())) {
+      return;
+    }
+
+    if (locationBuffer.size() == 0) {
+      locationBatchStart = point;
+
+      if (locationInterval > 0) {
+        mainHandler.postDelayed(locationFlush, locationInterval);
+      }
+    }
+
+    lastLocation = point;
+    locationBuffer.add(
+      point.getLatitude(),
+      point.getLongitude(),
+      view.getAccuracyCircle().getGeometry().getRadius(),
+      System.currentTimeMillis()
+    );
+
+    if (locationBuffer.isFull() || (locationDistance > 0 && YandexLocationBuffer.distance(
+      locationBatchStart.getLatitude(),
+      locationBatchStart.getLongitude(),
+      point.getLatitude(),
+      point.getLongitude()
+    ) >= locationDistance)) {
+      flushUserLocations();
+    }
+  }
+
+  private void flushUserLocations() {
+    mainHandler.removeCallbacks(locationFlush);
+
+    if (locationBuffer.size() == 0) return;
+
+    double[] fixes = locationBuffer.drain();
+
+    if (track != null) {
+      addToTrack(fixes);
+    }
+
+    Map<String, Object> arguments = new HashMap<>();
+    arguments.put("fixes", fixes);
+
+    methodChannel.invokeMethod("onUserLocationBatch", arguments);
+  }
+
+  // Every batch is simplified together with the last track point, so batches join without gaps
+  private void addToTrack(double[] fixes) {
+    int offset = trackPoints.isEmpty() ? 0 : YandexLocationBuffer.FIX_SIZE;
+    double[] trackFixes = new double[offset + fixes.length];
+
+    if (offset > 0) {
+      Point lastTrackPoint = trackPoints.get(trackPoints.size() - 1);
+      trackFixes[0] = lastTrackPoint.getLatitude();
+      trackFixes[1] = lastTrackPoint.getLongitude();
+    }
+    System.arraycopy(fixes, 0, trackFixes, offset, fixes.length);
+
+    boolean[] kept = trackTolerance > 0 ? YandexLocationBuffer.simplify(trackFixes, trackTolerance) : null;
+
+    for (int i = offset / YandexLocationBuffer.FIX_SIZE; i < trackFixes.length / YandexLocationBuffer.FIX_SIZE; i++) {
+      if (kept == null || kept[i]) {
+        trackPoints.add(new Point(
+          trackFixes[i * YandexLocationBuffer.FIX_SIZE],
+          trackFixes[i * YandexLocationBuffer.FIX_SIZE + 1]
+        ));
+      }
+    }
+
+    track.setGeometry(new Polyline(trackPoints));
+  }
+
   @SuppressWarnings("unchecked")
   private void setMapStyle(MethodCall call) {
     Map<String, Object> params = ((Map<String, Object>) call.arguments);
@@ -182,49 +405,54 @@ public class YandexMapController implements PlatformView, MethodChannel.MethodCa
   }
 
   @SuppressWarnings("unchecked")
-  private void addPlacemark(MethodCall call) {
-    Map<String, Object> params = ((Map<String, Object>) call.arguments);
+  private YandexMapCommandQueue.Addition prepareAddPlacemark(MethodCall call) {
+    final Map<String, Object> params = ((Map<String, Object>) call.arguments);
     Map<String, Object> paramsPoint = ((Map<String, Object>) params.get("point"));
     Map<String, Object> paramsStyle = ((Map<String, Object>) params.get("style"));
-    Point point = new Point(((Double) paramsPoint.get("latitude")), ((Double) paramsPoint.get("longitude")));
-    MapObjectCollection mapObjects = mapView.getMap().getMapObjects();
-    PlacemarkMapObject placemark = mapObjects.addPlacemark(point);
-    String iconName = (String) paramsStyle.get("iconName");
-    byte[] rawImageData = (byte[]) paramsStyle.get("rawImageData");
-
-    placemark.setUserData(params.get("hashCode"));
-    placemark.setOpacity(((Double) paramsStyle.get("opacity")).floatValue());
-    placemark.setDraggable((Boolean) paramsStyle.get("isDraggable"));
-    placemark.setDirection(((Double) paramsStyle.get("direction")).floatValue());
-    placemark.addTapListener(yandexMapObjectTapListener);
+    final Point point = new Point(((Double) paramsPoint.get("latitude")), ((Double) paramsPoint.get("longitude")));
+    final YandexPlacemarkStyle style = params.get("styleId") != null ?
+      styleRegistry.get(((Number) params.get("styleId")).intValue(), YandexPlacemarkStyle.class) :
+      new YandexPlacemarkStyle(mapView.getContext(), iconRegistry, paramsStyle);
+    // The icon is acquired along with resolving the style, so unregistering it right after this call can't drop it
+    final String iconId = acquireIcon(style.getIconId());
+
+    return new YandexMapCommandQueue.Addition() {
+      @Override
+      public void run() {
+        addPlacemark(params.get("hashCode"), (String) params.get("groupId"), point, style, iconId);
+      }
 
-    if (iconName != null) {
-      placemark.setIcon(ImageProvider.fromAsset(mapView.getContext(), FlutterMain.getLookupKeyForAsset(iconName)));
-    }
+      @Override
+      public void cancel() {
+        releaseIconId(iconId);
+      }
+    };
+  }
 
-    if (rawImageData != null) {
-      Bitmap bitmapData = BitmapFactory.decodeByteArray(rawImageData, 0, rawImageData.length);
-      placemark.setIcon(ImageProvider.fromBitmap(bitmapData));
+  /**
+   * Adds a placemark, taking over the reference to {@code iconId} acquired by the caller
+   */
+  private void addPlacemark(Object hashCode, String groupId, Point point, YandexPlacemarkStyle style, String iconId) {
+    try {
+      MapObjectCollection mapObjects = getMapObjects(groupId);
+      PlacemarkMapObject placemark = mapObjects.addPlacemark(point);
+
+      placemark.setUserData(hashCode);
+      placemark.setDragListener(yandexMapObjectDragListener);
+      style.applyTo(placemark);
+      objectStyles.put(hashCode, style);
+
+      placemarks.add(placemark);
+      addToGroup(hashCode, groupId);
+      addToGeoIndex(placemark, boundingBox(Collections.singletonList(point)));
+    } catch (RuntimeException e) {
+      releaseIconId(iconId);
+      throw e;
     }
 
-    IconStyle iconStyle = new IconStyle();
-    iconStyle.setAnchor(
-      new PointF(
-        ((Double) paramsStyle.get("anchorX")).floatValue(),
-        ((Double) paramsStyle.get("anchorY")).floatValue()
-      )
-    );
-    iconStyle.setZIndex(((Double) paramsStyle.get("zIndex")).floatValue());
-    iconStyle.setScale(((Double) paramsStyle.get("scale")).floatValue());
-
-    int rotationType = ((Number) paramsStyle.get("rotationType")).intValue();
-    if (rotationType == RotationType.ROTATE.ordinal()) {
-      iconStyle.setRotationType(RotationType.ROTATE);
+    if (iconId != null) {
+      placemarkIconIds.put(hashCode, iconId);
     }
-
-    placemark.setIconStyle(iconStyle);
-
-    placemarks.add(placemark);
   }
 
   private Map<String, Object> getTargetPoint() {
@@ -238,13 +466,16 @@ public class YandexMapController implements PlatformView, MethodChannel.MethodCa
   @SuppressWarnings("unchecked")
   private void removePlacemark(MethodCall call) {
     Map<String, Object> params = ((Map<String, Object>) call.arguments);
-    MapObjectCollection mapObjects = mapView.getMap().getMapObjects();
     Iterator<PlacemarkMapObject> iterator = placemarks.iterator();
 
     while (iterator.hasNext()) {
       PlacemarkMapObject placemarkMapObject = iterator.next();
       if (placemarkMapObject.getUserData().equals(params.get("hashCode"))) {
-        mapObjects.remove(placemarkMapObject);
+        placemarkMapObject.getParent().remove(placemarkMapObject);
+        objectGroups.remove(placemarkMapObject.getUserData());
+        objectStyles.remove(placemarkMapObject.getUserData());
+        releaseIcon(placemarkMapObject.getUserData());
+        geoIndex.remove(placemarkMapObject.getUserData());
         iterator.remove();
       }
     }
@@ -287,7 +518,6 @@ public class YandexMapController implements PlatformView, MethodChannel.MethodCa
       byte[] rawImageData = (byte[]) paramsStyle.get("rawImageData");
       cameraTarget.setOpacity(((Double) paramsStyle.get("opacity")).floatValue());
       cameraTarget.setDraggable((Boolean) paramsStyle.get("isDraggable"));
-      cameraTarget.addTapListener(yandexMapObjectTapListener);
 
       if (iconName != null) {
         cameraTarget.setIcon(ImageProvider.fromAsset(mapView.getContext(), FlutterMain.getLookupKeyForAsset(iconName)));
@@ -317,8 +547,8 @@ public class YandexMapController implements PlatformView, MethodChannel.MethodCa
   }
 
   @SuppressWarnings("unchecked")
-  private void addPolyline(MethodCall call) {
-    Map<String, Object> params = ((Map<String, Object>) call.arguments);
+  private YandexMapCommandQueue.Addition prepareAddPolyline(MethodCall call) {
+    final Map<String, Object> params = ((Map<String, Object>) call.arguments);
     Map<String, Object> paramsStyle = ((Map<String, Object>) params.get("style"));
     List<Map<String, Object>> paramsCoordinates = (List<Map<String, Object>>) params.get("coordinates");
     ArrayList<Point> polylineCoordinates = new ArrayList<>();
@@ -326,46 +556,59 @@ public class YandexMapController implements PlatformView, MethodChannel.MethodCa
       Point p = new Point((Double) c.get("latitude"), (Double) c.get("longitude"));
       polylineCoordinates.add(p);
     }
-    MapObjectCollection mapObjects = mapView.getMap().getMapObjects();
-    PolylineMapObject polyline = mapObjects.addPolyline(new Polyline(polylineCoordinates));
-
-    String outlineColorString = String.valueOf(paramsStyle.get("outlineColor"));
-    Long outlineColorLong = Long.parseLong(outlineColorString);
+    final Polyline geometry = new Polyline(polylineCoordinates);
+    final YandexPolylineStyle style = params.get("styleId") != null ?
+      styleRegistry.get(((Number) params.get("styleId")).intValue(), YandexPolylineStyle.class) :
+      new YandexPolylineStyle(paramsStyle);
+    final BoundingBox boundingBox = boundingBox(polylineCoordinates);
+
+    return new YandexMapCommandQueue.Addition() {
+      @Override
+      public void run() {
+        addPolyline(params.get("hashCode"), (String) params.get("groupId"), geometry, boundingBox, style);
+      }
+    };
+  }
 
-    String strokeColorString = String.valueOf(paramsStyle.get("strokeColor"));
-    Long strokeColorLong = Long.parseLong(strokeColorString);
+  private void addPolyline(
+    Object hashCode,
+    String groupId,
+    Polyline geometry,
+    BoundingBox boundingBox,
+    YandexPolylineStyle style
+  ) {
+    MapObjectCollection mapObjects = getMapObjects(groupId);
+    PolylineMapObject polyline = mapObjects.addPolyline(geometry);
 
-    polyline.setUserData(params.get("hashCode"));
-    polyline.setOutlineColor(outlineColorLong.intValue());
-    polyline.setOutlineWidth(((Double) paramsStyle.get("outlineWidth")).floatValue());
-    polyline.setStrokeColor(strokeColorLong.intValue());
-    polyline.setStrokeWidth(((Double) paramsStyle.get("strokeWidth")).floatValue());
-    polyline.setGeodesic((boolean) paramsStyle.get("isGeodesic"));
-    polyline.setDashLength(((Double) paramsStyle.get("dashLength")).floatValue());
-    polyline.setDashOffset(((Double) paramsStyle.get("dashOffset")).floatValue());
-    polyline.setGapLength(((Double) paramsStyle.get("gapLength")).floatValue());
+    polyline.setUserData(hashCode);
+    style.applyTo(polyline);
+    objectStyles.put(hashCode, style);
 
     polylines.add(polyline);
+    addToGroup(hashCode, groupId);
+    addToGeoIndex(polyline, boundingBox);
   }
 
   @SuppressWarnings("unchecked")
   private void removePolyline(MethodCall call) {
     Map<String, Object> params = ((Map<String, Object>) call.arguments);
-    MapObjectCollection mapObjects = mapView.getMap().getMapObjects();
     Iterator<PolylineMapObject> iterator = polylines.iterator();
 
     while (iterator.hasNext()) {
       PolylineMapObject polylineMapObject = iterator.next();
       if (polylineMapObject.getUserData().equals(params.get("hashCode"))) {
-        mapObjects.remove(polylineMapObject);
+        polylineMapObject.getParent().remove(polylineMapObject);
+        objectGroups.remove(polylineMapObject.getUserData());
+        objectStyles.remove(polylineMapObject.getUserData());
+        geoIndex.remove(polylineMapObject.getUserData());
         iterator.remove();
       }
     }
   }
 
   @SuppressWarnings("unchecked")
-  private void addPolygon(MethodCall call) {
-    Map<String, Object> params = ((Map<String, Object>) call.arguments);
+  private YandexMapCommandQueue.Addition prepareAddPolygon(MethodCall call) {
+    final Map<String, Object> params = ((Map<String, Object>) call.arguments);
     Map<String, Object> paramsStyle = ((Map<String, Object>) params.get("style"));
     List<Map<String, Object>> paramsCoordinates = (List<Map<String, Object>>) params.get("coordinates");
     ArrayList<Point> polygonPoints = new ArrayList<>();
@@ -373,64 +616,767 @@ public class YandexMapController implements PlatformView, MethodChannel.MethodCa
       Point point = new Point(((Double) c.get("latitude")), ((Double) c.get("longitude")));
       polygonPoints.add(point);
     }
-    MapObjectCollection mapObjects = mapView.getMap().getMapObjects();
-    PolygonMapObject polygon = mapObjects.addPolygon(
-      new Polygon(new LinearRing(polygonPoints), new ArrayList<LinearRing>())
-    );
+    final Polygon geometry = new Polygon(new LinearRing(polygonPoints), new ArrayList<LinearRing>());
+    final YandexPolygonStyle style = params.get("styleId") != null ?
+      styleRegistry.get(((Number) params.get("styleId")).intValue(), YandexPolygonStyle.class) :
+      new YandexPolygonStyle(paramsStyle);
+    final BoundingBox boundingBox = boundingBox(polygonPoints);
+
+    return new YandexMapCommandQueue.Addition() {
+      @Override
+      public void run() {
+        addPolygon(params.get("hashCode"), (String) params.get("groupId"), geometry, boundingBox, style);
+      }
+    };
+  }
+
+  private void addPolygon(
+    Object hashCode,
+    String groupId,
+    Polygon geometry,
+    BoundingBox boundingBox,
+    YandexPolygonStyle style
+  ) {
+    MapObjectCollection mapObjects = getMapObjects(groupId);
+    PolygonMapObject polygon = mapObjects.addPolygon(geometry);
 
-    polygon.setUserData(params.get("hashCode"));
-    polygon.setStrokeWidth(((Double) paramsStyle.get("strokeWidth")).floatValue());
-    polygon.setStrokeColor(((Number) paramsStyle.get("strokeColor")).intValue());
-    polygon.setFillColor(((Number) paramsStyle.get("fillColor")).intValue());
+    polygon.setUserData(hashCode);
+    style.applyTo(polygon);
+    objectStyles.put(hashCode, style);
 
     polygons.add(polygon);
+    addToGroup(hashCode, groupId);
+    addToGeoIndex(polygon, boundingBox);
   }
 
   @SuppressWarnings("unchecked")
   private void removePolygon(MethodCall call) {
     Map<String, Object> params = ((Map<String, Object>) call.arguments);
-    MapObjectCollection mapObjects = mapView.getMap().getMapObjects();
     Iterator<PolygonMapObject> iterator = polygons.iterator();
 
     while (iterator.hasNext()) {
       PolygonMapObject polygonMapObject = iterator.next();
       if (polygonMapObject.getUserData().equals(params.get("hashCode"))) {
-        mapObjects.remove(polygonMapObject);
+        polygonMapObject.getParent().remove(polygonMapObject);
+        objectGroups.remove(polygonMapObject.getUserData());
+        objectStyles.remove(polygonMapObject.getUserData());
+        geoIndex.remove(polygonMapObject.getUserData());
         iterator.remove();
       }
     }
   }
 
-  private void moveToUser() {
-    if (!hasLocationPermission()) return;
+  // Styles are registered during preparation, so they can be used by calls prepared right after them
+  @SuppressWarnings("unchecked")
+  private Runnable prepareRegisterStyle(MethodCall call) {
+    Map<String, Object> params = ((Map<String, Object>) call.arguments);
+    Map<String, Object> paramsStyle = ((Map<String, Object>) params.get("style"));
+    int styleId = ((Number) params.get("styleId")).intValue();
+
+    switch (call.method) {
+      case "registerPlacemarkStyle":
+        styleRegistry.put(styleId, new YandexPlacemarkStyle(mapView.getContext(), iconRegistry, paramsStyle));
+        break;
+      case "registerPolylineStyle":
+        styleRegistry.put(styleId, new YandexPolylineStyle(paramsStyle));
+        break;
+      case "registerPolygonStyle":
+        styleRegistry.put(styleId, new YandexPolygonStyle(paramsStyle));
+        break;
+    }
+
+    return noMapUpdate;
+  }
+
+  @SuppressWarnings("unchecked")
+  private Runnable prepareUnregisterStyle(MethodCall call) {
+    Map<String, Object> params = ((Map<String, Object>) call.arguments);
+
+    styleRegistry.remove(((Number) params.get("styleId")).intValue());
+
+    return noMapUpdate;
+  }
+
+  @SuppressWarnings("unchecked")
+  private Runnable prepareRegisterIcon(MethodCall call) {
+    Map<String, Object> params = ((Map<String, Object>) call.arguments);
+    String assetName = (String) params.get("assetName");
+    byte[] rawImageData = (byte[]) params.get("rawImageData");
+    ImageProvider image;
+
+    if (rawImageData != null) {
+      Bitmap bitmapData = BitmapFactory.decodeByteArray(rawImageData, 0, rawImageData.length);
+      image = ImageProvider.fromBitmap(bitmapData);
+    } else {
+      image = ImageProvider.fromAsset(mapView.getContext(), FlutterMain.getLookupKeyForAsset(assetName));
+    }
+
+    iconRegistry.register((String) params.get("iconId"), image);
+
+    return noMapUpdate;
+  }
+
+  @SuppressWarnings("unchecked")
+  private Runnable prepareUnregisterIcon(MethodCall call) {
+    Map<String, Object> params = ((Map<String, Object>) call.arguments);
+
+    iconRegistry.unregister((String) params.get("iconId"));
+
+    return noMapUpdate;
+  }
+
+  /**
+   * Returns {@code iconId} if a reference to it was acquired or {@code null} otherwise
+   */
+  private String acquireIcon(String iconId) {
+    return iconId != null && iconRegistry.acquire(iconId) ? iconId : null;
+  }
+
+  private void releaseIcon(Object hashCode) {
+    releaseIconId(placemarkIconIds.remove(hashCode));
+  }
+
+  private void releaseIconId(String iconId) {
+    if (iconId != null) {
+      iconRegistry.release(iconId);
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private void addGroup(MethodCall call) {
+    Map<String, Object> params = ((Map<String, Object>) call.arguments);
+    MapObjectCollection group = getGroup((String) params.get("groupId"));
+
+    group.setZIndex(((Double) params.get("zIndex")).floatValue());
+    group.setVisible((Boolean) params.get("isVisible"));
+  }
+
+  @SuppressWarnings("unchecked")
+  private void removeGroup(MethodCall call) {
+    Map<String, Object> params = ((Map<String, Object>) call.arguments);
+    String groupId = (String) params.get("groupId");
+    MapObjectCollection group = groups.remove(groupId);
+
+    if (group != null) {
+      removeGroupObjects(groupId);
+      mapView.getMap().getMapObjects().remove(group);
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private void clearGroup(MethodCall call) {
+    Map<String, Object> params = ((Map<String, Object>) call.arguments);
+    String groupId = (String) params.get("groupId");
+    MapObjectCollection group = groups.get(groupId);
+
+    if (group != null) {
+      removeGroupObjects(groupId);
+      group.clear();
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private void setGroupVisible(MethodCall call) {
+    Map<String, Object> params = ((Map<String, Object>) call.arguments);
+    MapObjectCollection group = groups.get((String) params.get("groupId"));
+
+    if (group != null) {
+      group.setVisible((Boolean) params.get("isVisible"));
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private void setGroupZIndex(MethodCall call) {
+    Map<String, Object> params = ((Map<String, Object>) call.arguments);
+    MapObjectCollection group = groups.get((String) params.get("groupId"));
+
+    if (group != null) {
+      group.setZIndex(((Double) params.get("zIndex")).floatValue());
+    }
+  }
+
+  private MapObjectCollection getGroup(String groupId) {
+    MapObjectCollection group = groups.get(groupId);
+
+    if (group == null) {
+      group = mapView.getMap().getMapObjects().addCollection();
+      groups.put(groupId, group);
+    }
+
+    return group;
+  }
+
+  private MapObjectCollection getMapObjects(String groupId) {
+    return groupId != null ? getGroup(groupId) : mapView.getMap().getMapObjects();
+  }
+
+  private void addToGroup(Object hashCode, String groupId) {
+    if (groupId != null) {
+      objectGroups.put(hashCode, groupId);
+    }
+  }
+
+  private void removeGroupObjects(String groupId) {
+    removeGroupObjects(groupId, placemarks);
+    removeGroupObjects(groupId, polylines);
+    removeGroupObjects(groupId, polygons);
+  }
+
+  private void removeGroupObjects(String groupId, List<? extends MapObject> mapObjects) {
+    Iterator<? extends MapObject> iterator = mapObjects.iterator();
+
+    while (iterator.hasNext()) {
+      Object userData = iterator.next().getUserData();
+      if (groupId.equals(objectGroups.get(userData))) {
+        objectGroups.remove(userData);
+        objectStyles.remove(userData);
+        releaseIcon(userData);
+        geoIndex.remove(userData);
+        iterator.remove();
+      }
+    }
+  }
+
+  // Geometries are read from map objects on the main thread, while computations run on a shared pool
+  @SuppressWarnings("unchecked")
+  private void getPolylineLengths(MethodCall call, MethodChannel.Result result) {
+    Map<String, Object> params = ((Map<String, Object>) call.arguments);
+    long[] hashCodes = (long[]) params.get("hashCodes");
+    Map<Long, PolylineMapObject> polylinesByHashCode = new HashMap<>();
+    List<Polyline> geometries = new ArrayList<>(hashCodes.length);
+
+    for (PolylineMapObject polyline : polylines) {
+      polylinesByHashCode.put(((Number) polyline.getUserData()).longValue(), polyline);
+    }
+    for (long hashCode : hashCodes) {
+      PolylineMapObject polyline = polylinesByHashCode.get(hashCode);
+      geometries.add(polyline != null ? polyline.getGeometry() : null);
+    }
+
+    YandexGeometryCalculator.polylineLengths(geometries, this.<double[]>mainThreadResult(result));
+  }
+
+  @SuppressWarnings("unchecked")
+  private void getPolygonAreas(MethodCall call, MethodChannel.Result result) {
+    Map<String, Object> params = ((Map<String, Object>) call.arguments);
+
+    YandexGeometryCalculator.polygonAreas(
+      getPolygonGeometries((long[]) params.get("hashCodes")),
+      this.<double[]>mainThreadResult(result)
+    );
+  }
+
+  @SuppressWarnings("unchecked")
+  private void findContainingPolygons(MethodCall call, MethodChannel.Result result) {
+    Map<String, Object> params = ((Map<String, Object>) call.arguments);
+
+    YandexGeometryCalculator.containingPolygons(
+      (double[]) params.get("points"),
+      getPolygonGeometries((long[]) params.get("hashCodes")),
+      this.<int[]>mainThreadResult(result)
+    );
+  }
+
+  private List<Polygon> getPolygonGeometries(long[] hashCodes) {
+    Map<Long, PolygonMapObject> polygonsByHashCode = new HashMap<>();
+    List<Polygon> geometries = new ArrayList<>(hashCodes.length);
+
+    for (PolygonMapObject polygon : polygons) {
+      polygonsByHashCode.put(((Number) polygon.getUserData()).longValue(), polygon);
+    }
+    for (long hashCode : hashCodes) {
+      PolygonMapObject polygon = polygonsByHashCode.get(hashCode);
+      geometries.add(polygon != null ? polygon.getGeometry() : null);
+    }
+
+    return geometries;
+  }
+
+  private <T> YandexGeometryCalculator.Callback<T> mainThreadResult(final MethodChannel.Result result) {
+    return new YandexGeometryCalculator.Callback<T>() {
+      @Override
+      public void onResult(final T value) {
+        mainHandler.post(new Runnable() {
+          @Override
+          public void run() {
+            if (disposed) return;
+
+            result.success(value);
+          }
+        });
+      }
+    };
+  }
+
+  private YandexMapState saveState() {
+    YandexMapState state = new YandexMapState(mapView.getMap().getCameraPosition(), styleRegistry, iconRegistry);
+
+    for (Map.Entry<String, MapObjectCollection> entry : groups.entrySet()) {
+      state.addGroup(entry.getKey(), entry.getValue().isVisible(), entry.getValue().getZIndex());
+    }
+    for (PlacemarkMapObject placemark : placemarks) {
+      Object hashCode = placemark.getUserData();
+      state.addPlacemark(hashCode, placemark.getGeometry(), objectStyles.get(hashCode), objectGroups.get(hashCode));
+    }
+    for (PolylineMapObject polyline : polylines) {
+      Object hashCode = polyline.getUserData();
+      state.addPolyline(hashCode, polyline.getGeometry(), objectStyles.get(hashCode), objectGroups.get(hashCode));
+    }
+    for (PolygonMapObject polygon : polygons) {
+      Object hashCode = polygon.getUserData();
+      state.addPolygon(hashCode, polygon.getGeometry(), objectStyles.get(hashCode), objectGroups.get(hashCode));
+    }
+
+    // Icons are acquired again by restored placemarks
+    for (Object hashCode : new ArrayList<>(placemarkIconIds.keySet())) {
+      releaseIcon(hashCode);
+    }
+
+    return state;
+  }
+
+  // Sets the key the state is saved under on dispose and restores the state saved under it before.
+  // Dart side asks to discard the saved state if it has lost its own part of it.
+  @SuppressWarnings("unchecked")
+  private boolean restoreState(MethodCall call) {
+    Map<String, Object> params = ((Map<String, Object>) call.arguments);
+    stateKey = (String) params.get("stateKey");
+    YandexMapState state = YandexMapState.remove(stateKey);
+
+    if (state == null || !((Boolean) params.get("restore"))) return false;
+
+    styleRegistry = state.styleRegistry;
+    iconRegistry = state.iconRegistry;
+
+    for (Map.Entry<String, YandexMapState.GroupState> entry : state.groups.entrySet()) {
+      MapObjectCollection group = getGroup(entry.getKey());
+
+      group.setVisible(entry.getValue().isVisible);
+      group.setZIndex(entry.getValue().zIndex);
+    }
+    for (YandexMapState.ObjectState placemark : state.placemarks) {
+      addPlacemark(
+        placemark.hashCode,
+        placemark.groupId,
+        (Point) placemark.geometry,
+        (YandexPlacemarkStyle) placemark.style,
+        acquireIcon(((YandexPlacemarkStyle) placemark.style).getIconId())
+      );
+    }
+    for (YandexMapState.ObjectState polyline : state.polylines) {
+      Polyline geometry = (Polyline) polyline.geometry;
+
+      addPolyline(
+        polyline.hashCode,
+        polyline.groupId,
+        geometry,
+        boundingBox(geometry.getPoints()),
+        (YandexPolylineStyle) polyline.style
+      );
+    }
+    for (YandexMapState.ObjectState polygon : state.polygons) {
+      Polygon geometry = (Polygon) polygon.geometry;
+
+      addPolygon(
+        polygon.hashCode,
+        polygon.groupId,
+        geometry,
+        boundingBox(geometry.getOuterRing().getPoints()),
+        (YandexPolygonStyle) polygon.style
+      );
+    }
+
+    mapView.getMap().move(state.cameraPosition);
+
+    return true;
+  }
+
+  @SuppressWarnings("unchecked")
+  private long[] queryObjectsAt(MethodCall call) {
+    Map<String, Object> params = ((Map<String, Object>) call.arguments);
+    Map<String, Object> paramsPoint = ((Map<String, Object>) params.get("point"));
+    Point point = new Point(((Double) paramsPoint.get("latitude")), ((Double) paramsPoint.get("longitude")));
+    float radius = ((Double) params.get("radius")).floatValue();
+    ScreenPoint screenPoint = mapView.getMapWindow().worldToScreen(point);
+
+    if (screenPoint == null) return new long[0];
+
+    List<Point> corners = new ArrayList<>();
+    float[] offsets = { -radius, radius };
+    for (float dx : offsets) {
+      for (float dy : offsets) {
+        Point corner = mapView.getMapWindow().screenToWorld(new ScreenPoint(screenPoint.getX() + dx, screenPoint.getY() + dy));
+
+        if (corner != null) {
+          corners.add(corner);
+        }
+      }
+    }
+    corners.add(point);
+
+    BoundingBox boundingBox = boundingBox(corners);
+    List<Object> hashCodes = new ArrayList<>();
+
+    for (YandexGeoIndex.Entry entry : geoIndex.query(
+      boundingBox.getSouthWest().getLatitude(),
+      boundingBox.getSouthWest().getLongitude(),
+      boundingBox.getNorthEast().getLatitude(),
+      boundingBox.getNorthEast().getLongitude()
+    )) {
+      // The index only narrows down candidates, every one of them is checked against its geometry
+      if (isShown((MapObject) entry.value) && isHit((MapObject) entry.value, point, screenPoint, radius)) {
+        hashCodes.add(entry.key);
+      }
+    }
+
+    return toHashCodes(hashCodes);
+  }
+
+  @SuppressWarnings("unchecked")
+  private long[] queryObjectsIn(MethodCall call) {
+    Map<String, Object> params = ((Map<String, Object>) call.arguments);
+    Map<String, Object> paramsSouthWestPoint = ((Map<String, Object>) params.get("southWestPoint"));
+    Map<String, Object> paramsNorthEastPoint = ((Map<String, Object>) params.get("northEastPoint"));
+    List<Object> hashCodes = new ArrayList<>();
+
+    for (YandexGeoIndex.Entry entry : geoIndex.query(
+      (Double) paramsSouthWestPoint.get("latitude"),
+      (Double) paramsSouthWestPoint.get("longitude"),
+      (Double) paramsNorthEastPoint.get("latitude"),
+      (Double) paramsNorthEastPoint.get("longitude")
+    )) {
+      if (isShown((MapObject) entry.value)) {
+        hashCodes.add(entry.key);
+      }
+    }
+
+    return toHashCodes(hashCodes);
+  }
+
+  // Objects hidden by themselves or with their group can't be picked by queries
+  private boolean isShown(MapObject mapObject) {
+    if (!mapObject.isVisible()) return false;
+
+    String groupId = objectGroups.get(mapObject.getUserData());
+    MapObjectCollection group = groupId != null ? groups.get(groupId) : null;
+
+    return group == null || group.isVisible();
+  }
+
+  private boolean isHit(MapObject mapObject, Point point, ScreenPoint screenPoint, float radius) {
+    if (mapObject instanceof PlacemarkMapObject) {
+      return screenDistance(((PlacemarkMapObject) mapObject).getGeometry(), screenPoint) <= radius;
+    }
+
+    if (mapObject instanceof PolylineMapObject) {
+      return screenDistance(((PolylineMapObject) mapObject).getGeometry().getPoints(), screenPoint) <= radius;
+    }
+
+    Polygon polygon = ((PolygonMapObject) mapObject).getGeometry();
+
+    if (YandexGeometryCalculator.contains(polygon, point.getLatitude(), point.getLongitude())) return true;
+
+    // Taps close to the border count as well, as they do for polylines
+    if (screenDistance(polygon.getOuterRing().getPoints(), screenPoint) <= radius) return true;
+    for (LinearRing innerRing : polygon.getInnerRings()) {
+      if (screenDistance(innerRing.getPoints(), screenPoint) <= radius) return true;
+    }
+
+    return false;
+  }
+
+  private double screenDistance(Point point, ScreenPoint screenPoint) {
+    ScreenPoint pointOnScreen = mapView.getMapWindow().worldToScreen(point);
+
+    if (pointOnScreen == null) return Double.POSITIVE_INFINITY;
+
+    return Math.hypot(pointOnScreen.getX() - screenPoint.getX(), pointOnScreen.getY() - screenPoint.getY());
+  }
+
+  // Distance to the closest segment of a line, segments with points off the screen are skipped
+  private double screenDistance(List<Point> points, ScreenPoint screenPoint) {
+    double distance = Double.POSITIVE_INFINITY;
+    ScreenPoint previous = null;
+
+    for (Point point : points) {
+      ScreenPoint current = mapView.getMapWindow().worldToScreen(point);
+
+      if (current != null) {
+        ScreenPoint start = previous != null ? previous : current;
+
+        distance = Math.min(distance, segmentDistance(
+          screenPoint.getX(), screenPoint.getY(),
+          start.getX(), start.getY(),
+          current.getX(), current.getY()
+        ));
+      }
+
+      previous = current;
+    }
+
+    return distance;
+  }
+
+  private static double segmentDistance(double x, double y, double x1, double y1, double x2, double y2) {
+    double dx = x2 - x1;
+    double dy = y2 - y1;
+    double lengthSquared = dx * dx + dy * dy;
+    double t = lengthSquared > 0 ? Math.max(0, Math.min(1, ((x - x1) * dx + (y - y1) * dy) / lengthSquared)) : 0;
+
+    return Math.hypot(x - x1 - t * dx, y - y1 - t * dy);
+  }
+
+  private void addToGeoIndex(MapObject mapObject, BoundingBox boundingBox) {
+    geoIndex.put(
+      mapObject.getUserData(),
+      mapObject,
+      boundingBox.getSouthWest().getLatitude(),
+      boundingBox.getSouthWest().getLongitude(),
+      boundingBox.getNorthEast().getLatitude(),
+      boundingBox.getNorthEast().getLongitude()
+    );
+  }
+
+  private BoundingBox boundingBox(List<Point> points) {
+    double minLatitude = Double.POSITIVE_INFINITY;
+    double minLongitude = Double.POSITIVE_INFINITY;
+    double maxLatitude = Double.NEGATIVE_INFINITY;
+    double maxLongitude = Double.NEGATIVE_INFINITY;
+
+    for (Point point : points) {
+      minLatitude = Math.min(minLatitude, point.getLatitude());
+      minLongitude = Math.min(minLongitude, point.getLongitude());
+      maxLatitude = Math.max(maxLatitude, point.getLatitude());
+      maxLongitude = Math.max(maxLongitude, point.getLongitude());
+    }
 
-    float currentZoom = mapView.getMap().getCameraPosition().getZoom();
-    float tilt = mapView.getMap().getCameraPosition().getTilt();
-    float azimuth = mapView.getMap().getCameraPosition().getAzimuth();
-    if (userLocationLayer != null) {
-      CameraPosition cameraPosition = userLocationLayer.cameraPosition();
-      if (cameraPosition != null) {
-        mapView.getMap().move(
-          new CameraPosition(cameraPosition.getTarget(), currentZoom, azimuth, tilt),
-          new Animation(Animation.Type.SMOOTH, 1),
-          null
-        );
+    return new BoundingBox(new Point(minLatitude, minLongitude), new Point(maxLatitude, maxLongitude));
+  }
+
+  private long[] toHashCodes(List<Object> userData) {
+    long[] hashCodes = new long[userData.size()];
+
+    for (int i = 0; i < hashCodes.length; i++) {
+      hashCodes[i] = ((Number) userData.get(i)).longValue();
+    }
+
+    return hashCodes;
+  }
+
+  // Objects are read on a separate thread and added in batches through the command queue,
+  // the result, or an error, is sent through the queue as well, once the batches before it are applied
+  @SuppressWarnings("unchecked")
+  private void importMapObjects(MethodCall call, final MethodChannel.Result result) {
+    final Map<String, Object> params = ((Map<String, Object>) call.arguments);
+    final YandexMapObjectImportListener listener = new YandexMapObjectImportListener(
+      ((Number) params.get("importId")).intValue(),
+      (String) params.get("groupId"),
+      ((Number) params.get("batchSize")).intValue(),
+      styleRegistry.get(((Number) params.get("placemarkStyleId")).intValue(), YandexPlacemarkStyle.class),
+      styleRegistry.get(((Number) params.get("polylineStyleId")).intValue(), YandexPolylineStyle.class),
+      styleRegistry.get(((Number) params.get("polygonStyleId")).intValue(), YandexPolygonStyle.class)
+    );
+
+    importExecutor.execute(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          readMapObjects(params, listener);
+          listener.flush(result);
+        } catch (final IOException | RuntimeException e) {
+          mainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+              if (disposed) return;
+
+              commandQueue.updateObjects(new Runnable() {
+                @Override
+                public void run() {
+                  result.error("IMPORT_ERROR", e.getMessage(), null);
+                }
+              });
+            }
+          });
+        }
+      }
+    });
+  }
+
+  private void readMapObjects(
+    Map<String, Object> params,
+    YandexMapObjectImporter.Listener listener
+  ) throws IOException {
+    String assetName = (String) params.get("assetName");
+    String filePath = (String) params.get("filePath");
+
+    if (((Number) params.get("format")).intValue() == IMPORT_FORMAT_BINARY) {
+      YandexMapObjectImporter.readBinary(mapMapObjectsFile(assetName, filePath), listener);
+      return;
+    }
+
+    InputStream inputStream = filePath != null ?
+      new FileInputStream(filePath) :
+      mapView.getContext().getAssets().open(FlutterMain.getLookupKeyForAsset(assetName));
+
+    try {
+      YandexMapObjectImporter.readGeoJson(
+        new BufferedReader(new InputStreamReader(inputStream, "UTF-8")),
+        listener
+      );
+    } finally {
+      inputStream.close();
+    }
+  }
+
+  private ByteBuffer mapMapObjectsFile(String assetName, String filePath) throws IOException {
+    if (filePath != null) {
+      RandomAccessFile file = new RandomAccessFile(filePath, "r");
+
+      try {
+        return file.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, file.length());
+      } finally {
+        file.close();
       }
     }
+
+    String assetKey = FlutterMain.getLookupKeyForAsset(assetName);
+    AssetFileDescriptor descriptor;
+
+    try {
+      descriptor = mapView.getContext().getAssets().openFd(assetKey);
+    } catch (FileNotFoundException e) {
+      // Compressed assets have no file descriptor and are read into memory instead
+      return ByteBuffer.wrap(readBytes(mapView.getContext().getAssets().open(assetKey)));
+    }
+
+    FileInputStream inputStream = descriptor.createInputStream();
+
+    try {
+      return inputStream.getChannel().map(
+        FileChannel.MapMode.READ_ONLY,
+        descriptor.getStartOffset(),
+        descriptor.getLength()
+      );
+    } finally {
+      inputStream.close();
+      descriptor.close();
+    }
   }
 
-  private void moveWithParams(Map<String, Object> params, CameraPosition cameraPosition) {
+  private static byte[] readBytes(InputStream inputStream) throws IOException {
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    byte[] buffer = new byte[8192];
+    int read;
+
+    try {
+      while ((read = inputStream.read(buffer)) != -1) {
+        outputStream.write(buffer, 0, read);
+      }
+    } finally {
+      inputStream.close();
+    }
+
+    return outputStream.toByteArray();
+  }
+
+  @SuppressWarnings("unchecked")
+  private void addTileLayer(MethodCall call) {
+    Map<String, Object> params = ((Map<String, Object>) call.arguments);
+    String layerId = (String) params.get("layerId");
+
+    removeTileLayer(layerId);
+
+    YandexTileProvider tileProvider = new YandexTileProvider(
+      (String) params.get("urlTemplate"),
+      new File(mapView.getContext().getCacheDir(), TILE_CACHE_DIRECTORY),
+      layerId,
+      ((Number) params.get("maxCacheSize")).longValue()
+    );
+    tileProvider.layer = mapView.getMap().addLayer(
+      layerId,
+      TILE_CONTENT_TYPE,
+      new LayerOptions(),
+      tileProvider,
+      new DefaultImageUrlProvider(),
+      Projections.getWgs84Mercator()
+    );
+    tileProvider.invalidate();
+
+    tileProviders.put(layerId, tileProvider);
+  }
+
+  @SuppressWarnings("unchecked")
+  private void removeTileLayer(MethodCall call) {
+    Map<String, Object> params = ((Map<String, Object>) call.arguments);
+
+    removeTileLayer((String) params.get("layerId"));
+  }
+
+  private void removeTileLayer(String layerId) {
+    YandexTileProvider tileProvider = tileProviders.remove(layerId);
+
+    if (tileProvider != null) {
+      tileProvider.layer.remove();
+      tileProvider.close();
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private void clearTileLayerCache(MethodCall call) throws IOException {
+    Map<String, Object> params = ((Map<String, Object>) call.arguments);
+    YandexTileProvider tileProvider = tileProviders.get((String) params.get("layerId"));
+
+    if (tileProvider != null) {
+      tileProvider.getCache().clear();
+      tileProvider.invalidate();
+    }
+  }
+
+  private void moveToUser() {
+    if (!hasLocationPermission() || userLocationLayer == null) return;
+
+    final CameraPosition userCameraPosition = userLocationLayer.cameraPosition();
+    if (userCameraPosition == null) return;
+
+    commandQueue.moveCamera(
+      new YandexMapCommandQueue.CameraCommand() {
+        @Override
+        public CameraPosition apply(CameraPosition cameraPosition) {
+          return new CameraPosition(
+            userCameraPosition.getTarget(),
+            cameraPosition.getZoom(),
+            cameraPosition.getAzimuth(),
+            cameraPosition.getTilt()
+          );
+        }
+      },
+      new Animation(Animation.Type.SMOOTH, 1)
+    );
+  }
+
+  @SuppressWarnings("unchecked")
+  private void moveWithParams(
+    Map<String, Object> params,
+    final CameraPosition cameraPosition
+  ) {
     Map<String, Object> paramsAnimation = ((Map<String, Object>) params.get("animation"));
+    Animation animation = null;
     if (((Boolean) paramsAnimation.get("animate"))) {
       Animation.Type type = ((Boolean) paramsAnimation.get("smoothAnimation")) ?
         Animation.Type.SMOOTH :
         Animation.Type.LINEAR;
-      Animation animation = new Animation(type, ((Double) paramsAnimation.get("animationDuration")).floatValue());
-
-      mapView.getMap().move(cameraPosition, animation, null);
-    } else {
-      mapView.getMap().move(cameraPosition);
+      animation = new Animation(type, ((Double) paramsAnimation.get("animationDuration")).floatValue());
     }
+
+    commandQueue.moveCamera(
+      new YandexMapCommandQueue.CameraCommand() {
+        @Override
+        public CameraPosition apply(CameraPosition currentCameraPosition) {
+          return cameraPosition;
+        }
+      },
+      animation
+    );
   }
 
   private boolean hasLocationPermission() {
@@ -449,20 +1395,20 @@ public class YandexMapController implements PlatformView, MethodChannel.MethodCa
     zoom(-1f);
   }
 
-  private void zoom(float step) {
-    Point zoomPoint = mapView.getMap().getCameraPosition().getTarget();
-    float currentZoom = mapView.getMap().getCameraPosition().getZoom();
-    float tilt = mapView.getMap().getCameraPosition().getTilt();
-    float azimuth = mapView.getMap().getCameraPosition().getAzimuth();
-    mapView.getMap().move(
-      new CameraPosition(
-        zoomPoint,
-        currentZoom + step,
-        tilt,
-        azimuth
-      ),
-      new Animation(Animation.Type.SMOOTH, 1),
-      null
+  private void zoom(final float step) {
+    commandQueue.moveCamera(
+      new YandexMapCommandQueue.CameraCommand() {
+        @Override
+        public CameraPosition apply(CameraPosition cameraPosition) {
+          return new CameraPosition(
+            cameraPosition.getTarget(),
+            cameraPosition.getZoom() + step,
+            cameraPosition.getAzimuth(),
+            cameraPosition.getTilt()
+          );
+        }
+      },
+      new Animation(Animation.Type.SMOOTH, 1)
     );
   }
 
@@ -478,6 +1424,13 @@ public class YandexMapController implements PlatformView, MethodChannel.MethodCa
     return resultObject;
   }
 
+  @SuppressWarnings("unchecked")
+  private Object hashCode(MethodCall call) {
+    Map<String, Object> params = ((Map<String, Object>) call.arguments);
+
+    return params.get("hashCode");
+  }
+
   private Map<String, Object> pointToJson(Point point){
     Map<String, Object> arguments = new HashMap<>();
     arguments.put("latitude", point.getLatitude());
@@ -485,8 +1438,193 @@ public class YandexMapController implements PlatformView, MethodChannel.MethodCa
     return arguments;
   }
 
+  // Arguments of heavy calls are decoded on a background thread, while map changes are applied on the main thread.
+  // Every call passes through the same background queue, so calls are still handled in the order they were made.
   @Override
-  public void onMethodCall(MethodCall call, MethodChannel.Result result) {
+  public void onMethodCall(final MethodCall call, final MethodChannel.Result result) {
+    backgroundExecutor.execute(new Runnable() {
+      @Override
+      public void run() {
+        if (disposed) return;
+
+        final Runnable mapUpdate;
+
+        try {
+          mapUpdate = prepareMethodCall(call);
+        } catch (final RuntimeException e) {
+          mainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+              if (disposed) return;
+
+              result.error("error", e.getMessage(), Log.getStackTraceString(e));
+            }
+          });
+          return;
+        }
+
+        mainHandler.post(new Runnable() {
+          @Override
+          public void run() {
+            if (disposed) return;
+
+            try {
+              if (mapUpdate != null) {
+                handlePreparedMethodCall(call, mapUpdate, result);
+              } else {
+                handleMethodCall(call, result);
+              }
+            } catch (RuntimeException e) {
+              result.error("error", e.getMessage(), Log.getStackTraceString(e));
+            }
+          }
+        });
+      }
+    });
+  }
+
+  private Runnable prepareMethodCall(MethodCall call) {
+    switch (call.method) {
+      case "registerPlacemarkStyle":
+      case "registerPolylineStyle":
+      case "registerPolygonStyle":
+        return prepareRegisterStyle(call);
+      case "unregisterStyle":
+        return prepareUnregisterStyle(call);
+      case "registerIcon":
+        return prepareRegisterIcon(call);
+      case "unregisterIcon":
+        return prepareUnregisterIcon(call);
+      case "addPlacemark":
+        return prepareAddPlacemark(call);
+      case "addPolyline":
+        return prepareAddPolyline(call);
+      case "addPolygon":
+        return prepareAddPolygon(call);
+      default:
+        return null;
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private void handlePreparedMethodCall(MethodCall call, Runnable mapUpdate, MethodChannel.Result result) {
+    Map<String, Object> params = ((Map<String, Object>) call.arguments);
+
+    switch (call.method) {
+      case "addPlacemark":
+      case "addPolyline":
+      case "addPolygon":
+        commandQueue.addObject(params.get("hashCode"), (YandexMapCommandQueue.Addition) mapUpdate);
+        result.success(null);
+        break;
+      default:
+        // Registering styles and icons doesn't change the map, so the queued commands can wait for the frame
+        if (mapUpdate != noMapUpdate) {
+          commandQueue.flush();
+          mapUpdate.run();
+        }
+        result.success(null);
+        break;
+    }
+  }
+
+  // Returns false if the call doesn't go through the command queue
+  private boolean queueMethodCall(final MethodCall call) {
+    switch (call.method) {
+      case "move":
+        move(call);
+        return true;
+      case "setBounds":
+        setBounds(call);
+        return true;
+      case "zoomIn":
+        zoomIn();
+        return true;
+      case "zoomOut":
+        zoomOut();
+        return true;
+      case "moveToUser":
+        moveToUser();
+        return true;
+      case "removePlacemark":
+        commandQueue.removeObject(hashCode(call), new Runnable() {
+          @Override
+          public void run() {
+            removePlacemark(call);
+          }
+        });
+        return true;
+      case "removePolyline":
+        commandQueue.removeObject(hashCode(call), new Runnable() {
+          @Override
+          public void run() {
+            removePolyline(call);
+          }
+        });
+        return true;
+      case "removePolygon":
+        commandQueue.removeObject(hashCode(call), new Runnable() {
+          @Override
+          public void run() {
+            removePolygon(call);
+          }
+        });
+        return true;
+      case "addGroup":
+        commandQueue.updateObjects(new Runnable() {
+          @Override
+          public void run() {
+            addGroup(call);
+          }
+        });
+        return true;
+      case "removeGroup":
+        commandQueue.updateObjects(new Runnable() {
+          @Override
+          public void run() {
+            removeGroup(call);
+          }
+        });
+        return true;
+      case "clearGroup":
+        commandQueue.updateObjects(new Runnable() {
+          @Override
+          public void run() {
+            clearGroup(call);
+          }
+        });
+        return true;
+      case "setGroupVisible":
+        commandQueue.updateObjects(new Runnable() {
+          @Override
+          public void run() {
+            setGroupVisible(call);
+          }
+        });
+        return true;
+      case "setGroupZIndex":
+        commandQueue.updateObjects(new Runnable() {
+          @Override
+          public void run() {
+            setGroupZIndex(call);
+          }
+        });
+        return true;
+      default:
+        return false;
+    }
+  }
+
+  // Camera and map object changes go through the command queue, every other call applies queued changes first.
+  // Queued calls are completed right away, so callers can go on without waiting for the frame.
+  private void handleMethodCall(final MethodCall call, MethodChannel.Result result) {
+    if (queueMethodCall(call)) {
+      result.success(null);
+      return;
+    }
+
+    commandQueue.flush();
+
     switch (call.method) {
       case "logoAlignment":
         logoAlignment(call);
@@ -508,16 +1646,15 @@ public class YandexMapController implements PlatformView, MethodChannel.MethodCa
         hideUserLayer();
         result.success(null);
         break;
-      case "setMapStyle":
-        setMapStyle(call);
-        result.success(null);
+      case "enableUserLocationUpdates":
+        enableUserLocationUpdates(call, result);
         break;
-      case "move":
-        move(call);
+      case "disableUserLocationUpdates":
+        disableUserLocationUpdates();
         result.success(null);
         break;
-      case "setBounds":
-        setBounds(call);
+      case "setMapStyle":
+        setMapStyle(call);
         result.success(null);
         break;
       case "enableCameraTracking":
@@ -528,48 +1665,52 @@ public class YandexMapController implements PlatformView, MethodChannel.MethodCa
         disableCameraTracking(call);
         result.success(null);
         break;
-      case "addPlacemark":
-        addPlacemark(call);
-        result.success(null);
+      case "getTargetPoint":
+        Map<String, Object> point = getTargetPoint();
+        result.success(point);
         break;
-      case "removePlacemark":
-        removePlacemark(call);
-        result.success(null);
+      case "getVisibleRegion":
+        result.success(getVisibleRegion());
         break;
-      case "addPolyline":
-        addPolyline(call);
-        result.success(null);
+      case "getPolylineLengths":
+        getPolylineLengths(call, result);
         break;
-      case "removePolyline":
-        removePolyline(call);
-        result.success(null);
+      case "getPolygonAreas":
+        getPolygonAreas(call, result);
         break;
-      case "addPolygon":
-        addPolygon(call);
-        result.success(null);
+      case "findContainingPolygons":
+        findContainingPolygons(call, result);
         break;
-      case "removePolygon":
-        removePolygon(call);
-        result.success(null);
+      case "restoreState":
+        result.success(restoreState(call));
         break;
-      case "zoomIn":
-        zoomIn();
-        result.success(null);
+      case "getCollapsedCommandCount":
+        result.success(commandQueue.getCollapsedCount());
         break;
-      case "zoomOut":
-        zoomOut();
-        result.success(null);
+      case "queryObjectsAt":
+        result.success(queryObjectsAt(call));
         break;
-      case "getTargetPoint":
-        Map<String, Object> point = getTargetPoint();
-        result.success(point);
+      case "queryObjectsIn":
+        result.success(queryObjectsIn(call));
         break;
-      case "moveToUser":
-        moveToUser();
+      case "importMapObjects":
+        importMapObjects(call, result);
+        break;
+      case "addTileLayer":
+        addTileLayer(call);
         result.success(null);
         break;
-      case "getVisibleRegion":
-        result.success(getVisibleRegion());
+      case "removeTileLayer":
+        removeTileLayer(call);
+        result.success(null);
+        break;
+      case "clearTileLayerCache":
+        try {
+          clearTileLayerCache(call);
+          result.success(null);
+        } catch (IOException e) {
+          result.error("TILE_CACHE_ERROR", e.getMessage(), null);
+        }
         break;
       default:
         result.notImplemented();
@@ -617,7 +1758,226 @@ public class YandexMapController implements PlatformView, MethodChannel.MethodCa
 
     public void onObjectRemoved(UserLocationView view) {}
 
-    public void onObjectUpdated(UserLocationView view, ObjectEvent event) {}
+    public void onObjectUpdated(UserLocationView view, ObjectEvent event) {
+      addUserLocation(view);
+    }
+  }
+
+  private class YandexMapObjectImportListener implements YandexMapObjectImporter.Listener {
+    private final int importId;
+    private final String groupId;
+    private final int batchSize;
+    private final YandexPlacemarkStyle placemarkStyle;
+    private final YandexPolylineStyle polylineStyle;
+    private final YandexPolygonStyle polygonStyle;
+    private final List<Object> hashCodes = new ArrayList<>();
+    // Allows one batch waiting for a frame at a time, so every frame applies at most one batch
+    private final Semaphore pendingBatches = new Semaphore(1);
+    private List<Runnable> batch = new ArrayList<>();
+
+    YandexMapObjectImportListener(
+      int importId,
+      String groupId,
+      int batchSize,
+      YandexPlacemarkStyle placemarkStyle,
+      YandexPolylineStyle polylineStyle,
+      YandexPolygonStyle polygonStyle
+    ) {
+      this.importId = importId;
+      this.groupId = groupId;
+      this.batchSize = batchSize;
+      this.placemarkStyle = placemarkStyle;
+      this.polylineStyle = polylineStyle;
+      this.polygonStyle = polygonStyle;
+    }
+
+    public void onPoint(Long id, final Point point) throws IOException {
+      final Object hashCode = nextHashCode(id);
+
+      add(new Runnable() {
+        @Override
+        public void run() {
+          addPlacemark(hashCode, groupId, point, placemarkStyle, acquireIcon(placemarkStyle.getIconId()));
+        }
+      });
+    }
+
+    public void onPolyline(Long id, List<Point> points) throws IOException {
+      final Object hashCode = nextHashCode(id);
+      final Polyline geometry = new Polyline(points);
+      final BoundingBox boundingBox = boundingBox(points);
+
+      add(new Runnable() {
+        @Override
+        public void run() {
+          addPolyline(hashCode, groupId, geometry, boundingBox, polylineStyle);
+        }
+      });
+    }
+
+    public void onPolygon(Long id, List<Point> outerRing, List<List<Point>> innerRings) throws IOException {
+      final Object hashCode = nextHashCode(id);
+      List<LinearRing> linearRings = new ArrayList<>();
+      for (List<Point> innerRing : innerRings) {
+        linearRings.add(new LinearRing(innerRing));
+      }
+      final Polygon geometry = new Polygon(new LinearRing(outerRing), linearRings);
+      final BoundingBox boundingBox = boundingBox(outerRing);
+
+      add(new Runnable() {
+        @Override
+        public void run() {
+          addPolygon(hashCode, groupId, geometry, boundingBox, polygonStyle);
+        }
+      });
+    }
+
+    /**
+     * Queues the collected objects once the previous batch is applied,
+     * {@code result} is sent all imported ids after they are added.
+     */
+    void flush(final MethodChannel.Result result) throws IOException {
+      try {
+        pendingBatches.acquire();
+      } catch (InterruptedException e) {
+        throw new InterruptedIOException("Map objects import was cancelled");
+      }
+
+      final List<Runnable> appliedBatch = batch;
+      final int count = hashCodes.size();
+      final long[] importedHashCodes = result != null ? toHashCodes(hashCodes) : null;
+
+      batch = new ArrayList<>();
+      mainHandler.post(new Runnable() {
+        @Override
+        public void run() {
+          if (disposed) return;
+
+          commandQueue.updateObjects(new Runnable() {
+            @Override
+            public void run() {
+              try {
+                for (Runnable mapUpdate : appliedBatch) {
+                  mapUpdate.run();
+                }
+              } finally {
+                pendingBatches.release();
+              }
+
+              Map<String, Object> arguments = new HashMap<>();
+              arguments.put("importId", importId);
+              arguments.put("count", count);
+              methodChannel.invokeMethod("onMapObjectsImportProgress", arguments);
+
+              if (result != null) {
+                result.success(importedHashCodes);
+              }
+            }
+          });
+        }
+      });
+    }
+
+    private Object nextHashCode(Long id) {
+      Object hashCode = id != null && id >= 0 && id < IMPORTED_ID_OFFSET ?
+        IMPORTED_ID_OFFSET + id :
+        importedObjectIds.getAndIncrement();
+
+      hashCodes.add(hashCode);
+
+      return hashCode;
+    }
+
+    private void add(Runnable mapUpdate) throws IOException {
+      if (Thread.currentThread().isInterrupted()) {
+        throw new InterruptedIOException("Map objects import was cancelled");
+      }
+
+      batch.add(mapUpdate);
+
+      if (batch.size() >= batchSize) {
+        flush(null);
+      }
+    }
+  }
+
+  private class YandexTileProvider implements TileProvider {
+    private final String urlTemplate;
+    private final File cacheDirectory;
+    private final String cacheName;
+    private final long maxCacheSize;
+    private YandexTileDiskCache cache;
+    private boolean closed = false;
+    private Layer layer;
+    private int version = 0;
+
+    YandexTileProvider(String urlTemplate, File cacheDirectory, String cacheName, long maxCacheSize) {
+      this.urlTemplate = urlTemplate;
+      this.cacheDirectory = cacheDirectory;
+      this.cacheName = cacheName;
+      this.maxCacheSize = maxCacheSize;
+    }
+
+    // Called by MapKit on a background thread
+    public RawTile load(TileId tileId, Version version, String etag) {
+      long key = YandexTileDiskCache.key(tileId.getX(), tileId.getY(), tileId.getZ());
+
+      try {
+        YandexTileDiskCache cache = getCache();
+        byte[] data = cache.get(key);
+
+        if (data == null) {
+          data = fetch(tileId);
+          cache.put(key, data);
+        }
+
+        return new RawTile(version, etag, RawTile.State.OK, data);
+      } catch (IOException e) {
+        return new RawTile(version, etag, RawTile.State.ERROR, new byte[0]);
+      }
+    }
+
+    void invalidate() {
+      layer.invalidate(String.valueOf(++version));
+    }
+
+    // The cache is opened on the first tile load, so adding a layer doesn't touch files on the main thread
+    synchronized YandexTileDiskCache getCache() throws IOException {
+      if (closed) {
+        throw new IOException("Tile layer " + cacheName + " is removed");
+      }
+
+      if (cache == null) {
+        cache = new YandexTileDiskCache(cacheDirectory, cacheName, maxCacheSize);
+      }
+
+      return cache;
+    }
+
+    synchronized void close() {
+      closed = true;
+
+      if (cache != null) {
+        try {
+          cache.close();
+        } catch (IOException ignored) {}
+      }
+    }
+
+    private byte[] fetch(TileId tileId) throws IOException {
+      URL url = new URL(
+        urlTemplate
+          .replace("{x}", String.valueOf(tileId.getX()))
+          .replace("{y}", String.valueOf(tileId.getY()))
+          .replace("{z}", String.valueOf(tileId.getZ()))
+      );
+      URLConnection connection = url.openConnection();
+
+      connection.setConnectTimeout(TILE_CONNECT_TIMEOUT);
+      connection.setReadTimeout(TILE_READ_TIMEOUT);
+
+      return readBytes(connection.getInputStream());
+    }
   }
 
   private class YandexMapObjectTapListener implements MapObjectTapListener {
@@ -633,6 +1993,19 @@ public class YandexMapController implements PlatformView, MethodChannel.MethodCa
     }
   }
 
+  // Keeps the geo index in sync with placemarks moved by the user
+  private class YandexMapObjectDragListener implements MapObjectDragListener {
+    public void onMapObjectDragStart(MapObject mapObject) {}
+
+    public void onMapObjectDrag(MapObject mapObject, Point point) {}
+
+    public void onMapObjectDragEnd(MapObject mapObject) {
+      Point point = ((PlacemarkMapObject) mapObject).getGeometry();
+
+      addToGeoIndex(mapObject, boundingBox(Collections.singletonList(point)));
+    }
+  }
+
   private class YandexMapInputListener implements InputListener {
     public void onMapTap(com.yandex.mapkit.map.Map map, Point point) {
       Map<String, Object> arguments = new HashMap<>();
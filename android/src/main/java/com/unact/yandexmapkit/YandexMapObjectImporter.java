@@ -0,0 +1,265 @@
+package com.unact.yandexmapkit;
+
+import android.util.JsonReader;
+import android.util.JsonToken;
+
+import com.yandex.mapkit.geometry.Point;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Single pass readers of map objects stored in GeoJSON or in a compact binary format.
+ *
+ * The binary format is a sequence of big-endian values:
+ * a header of 4 bytes {@code YMKO} followed by an int32 format version, then records until the end of data.
+ * Every record starts with an int8 type (1 - point, 2 - polyline, 3 - polygon) and an int64 id (0 - generate id).
+ * A point is followed by float64 latitude and longitude,
+ * a polyline is followed by an int32 point count and its points,
+ * a polygon is followed by an int32 ring count and its rings, each ring is stored like a polyline.
+ * The first ring of a polygon is its outer ring.
+ */
+public class YandexMapObjectImporter {
+  public static final int BINARY_MAGIC = 0x594D4B4F;
+  public static final int BINARY_VERSION = 1;
+
+  private static final byte BINARY_POINT = 1;
+  private static final byte BINARY_POLYLINE = 2;
+  private static final byte BINARY_POLYGON = 3;
+
+  public interface Listener {
+    /**
+     * Called for every read object, {@code id} is {@code null} if the source has no usable id for it.
+     */
+    void onPoint(Long id, Point point) throws IOException;
+
+    void onPolyline(Long id, List<Point> points) throws IOException;
+
+    void onPolygon(Long id, List<Point> outerRing, List<List<Point>> innerRings) throws IOException;
+  }
+
+  /**
+   * Reads features of a GeoJSON FeatureCollection, Feature or geometry object.
+   *
+   * Points, line strings and polygons are supported, along with their multipart versions.
+   * Parts of multipart geometries are read as separate objects without ids.
+   */
+  public static void readGeoJson(Reader source, Listener listener) throws IOException {
+    JsonReader reader = new JsonReader(source);
+
+    try {
+      readGeoJsonObject(reader, listener);
+    } finally {
+      reader.close();
+    }
+  }
+
+  public static void readBinary(ByteBuffer buffer, Listener listener) throws IOException {
+    try {
+      if (buffer.getInt() != BINARY_MAGIC) {
+        throw new IOException("Not a map objects file");
+      }
+
+      int version = buffer.getInt();
+      if (version != BINARY_VERSION) {
+        throw new IOException("Unsupported map objects file version " + version);
+      }
+
+      while (buffer.hasRemaining()) {
+        byte type = buffer.get();
+        long rawId = buffer.getLong();
+        Long id = rawId != 0 ? rawId : null;
+
+        switch (type) {
+          case BINARY_POINT:
+            listener.onPoint(id, new Point(buffer.getDouble(), buffer.getDouble()));
+            break;
+          case BINARY_POLYLINE:
+            listener.onPolyline(id, readBinaryPoints(buffer));
+            break;
+          case BINARY_POLYGON:
+            int ringCount = buffer.getInt();
+            List<Point> outerRing = readBinaryPoints(buffer);
+            List<List<Point>> innerRings = new ArrayList<>();
+
+            for (int i = 1; i < ringCount; i++) {
+              innerRings.add(readBinaryPoints(buffer));
+            }
+
+            listener.onPolygon(id, outerRing, innerRings);
+            break;
+          default:
+            throw new IOException("Unknown map object type " + type);
+        }
+      }
+    } catch (BufferUnderflowException e) {
+      throw new IOException("Unexpected end of map objects file");
+    }
+  }
+
+  private static List<Point> readBinaryPoints(ByteBuffer buffer) {
+    int pointCount = buffer.getInt();
+    List<Point> points = new ArrayList<>(pointCount);
+
+    for (int i = 0; i < pointCount; i++) {
+      points.add(new Point(buffer.getDouble(), buffer.getDouble()));
+    }
+
+    return points;
+  }
+
+  /**
+   * Reads a GeoJSON object, emitting its geometry once the whole object is read,
+   * as members of a Feature can come in any order.
+   */
+  private static void readGeoJsonObject(JsonReader reader, Listener listener) throws IOException {
+    String type = null;
+    String geometryType = null;
+    Long id = null;
+    Object coordinates = null;
+
+    reader.beginObject();
+    while (reader.hasNext()) {
+      String name = reader.nextName();
+
+      if (name.equals("type")) {
+        type = reader.nextString();
+      } else if (name.equals("features")) {
+        reader.beginArray();
+        while (reader.hasNext()) {
+          readGeoJsonObject(reader, listener);
+        }
+        reader.endArray();
+      } else if (name.equals("geometry") && reader.peek() == JsonToken.BEGIN_OBJECT) {
+        Object[] geometry = readGeoJsonGeometry(reader);
+        geometryType = (String) geometry[0];
+        coordinates = geometry[1];
+      } else if (name.equals("id") && reader.peek() == JsonToken.NUMBER) {
+        double value = reader.nextDouble();
+        id = value == Math.rint(value) ? (long) value : null;
+      } else if (name.equals("coordinates")) {
+        coordinates = readCoordinates(reader);
+      } else {
+        reader.skipValue();
+      }
+    }
+    reader.endObject();
+
+    if (coordinates != null) {
+      emitGeometry(geometryType != null ? geometryType : type, id, coordinates, listener);
+    }
+  }
+
+  private static Object[] readGeoJsonGeometry(JsonReader reader) throws IOException {
+    String type = null;
+    Object coordinates = null;
+
+    reader.beginObject();
+    while (reader.hasNext()) {
+      String name = reader.nextName();
+
+      if (name.equals("type")) {
+        type = reader.nextString();
+      } else if (name.equals("coordinates")) {
+        coordinates = readCoordinates(reader);
+      } else {
+        reader.skipValue();
+      }
+    }
+    reader.endObject();
+
+    return new Object[] { type, coordinates };
+  }
+
+  /**
+   * Reads a position as a {@code double[]} or an array of coordinates as a {@code List}.
+   */
+  private static Object readCoordinates(JsonReader reader) throws IOException {
+    reader.beginArray();
+
+    if (reader.peek() == JsonToken.NUMBER) {
+      double longitude = reader.nextDouble();
+      double latitude = reader.nextDouble();
+
+      while (reader.hasNext()) {
+        reader.skipValue();
+      }
+      reader.endArray();
+
+      return new double[] { latitude, longitude };
+    }
+
+    List<Object> items = new ArrayList<>();
+    while (reader.hasNext()) {
+      items.add(readCoordinates(reader));
+    }
+    reader.endArray();
+
+    return items;
+  }
+
+  @SuppressWarnings("unchecked")
+  private static void emitGeometry(String type, Long id, Object coordinates, Listener listener) throws IOException {
+    if (type == null) return;
+
+    switch (type) {
+      case "Point":
+        listener.onPoint(id, toPoint(coordinates));
+        break;
+      case "MultiPoint":
+        for (Object item : (List<Object>) coordinates) {
+          listener.onPoint(null, toPoint(item));
+        }
+        break;
+      case "LineString":
+        listener.onPolyline(id, toPoints(coordinates));
+        break;
+      case "MultiLineString":
+        for (Object item : (List<Object>) coordinates) {
+          listener.onPolyline(null, toPoints(item));
+        }
+        break;
+      case "Polygon":
+        emitPolygon(id, (List<Object>) coordinates, listener);
+        break;
+      case "MultiPolygon":
+        for (Object item : (List<Object>) coordinates) {
+          emitPolygon(null, (List<Object>) item, listener);
+        }
+        break;
+    }
+  }
+
+  private static void emitPolygon(Long id, List<Object> rings, Listener listener) throws IOException {
+    if (rings.isEmpty()) return;
+
+    List<List<Point>> innerRings = new ArrayList<>();
+    for (Object ring : rings.subList(1, rings.size())) {
+      innerRings.add(toPoints(ring));
+    }
+
+    listener.onPolygon(id, toPoints(rings.get(0)), innerRings);
+  }
+
+  private static Point toPoint(Object coordinates) {
+    double[] position = (double[]) coordinates;
+
+    return new Point(position[0], position[1]);
+  }
+
+  @SuppressWarnings("unchecked")
+  private static List<Point> toPoints(Object coordinates) {
+    List<Object> positions = (List<Object>) coordinates;
+    List<Point> points = new ArrayList<>(positions.size());
+
+    for (Object position : positions) {
+      points.add(toPoint(position));
+    }
+
+    return points;
+  }
+}
@@ -0,0 +1,94 @@
+package com.unact.yandexmapkit;
+
+import android.util.LruCache;
+
+import com.yandex.mapkit.map.CameraPosition;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Map objects, groups, registered styles and icons and the camera position of a disposed map view,
+ * kept under a caller supplied key, so they can be reapplied to the next map view using the same key.
+ *
+ * Only the most recently saved states are kept.
+ */
+public class YandexMapState {
+  private static final int MAX_STATES = 4;
+  private static final LruCache<String, YandexMapState> states = new LruCache<>(MAX_STATES);
+
+  public final CameraPosition cameraPosition;
+  public final YandexStyleRegistry styleRegistry;
+  public final YandexIconRegistry iconRegistry;
+  public final Map<String, GroupState> groups = new LinkedHashMap<>();
+  public final List<ObjectState> placemarks = new ArrayList<>();
+  public final List<ObjectState> polylines = new ArrayList<>();
+  public final List<ObjectState> polygons = new ArrayList<>();
+
+  public static class GroupState {
+    public final boolean isVisible;
+    public final float zIndex;
+
+    GroupState(boolean isVisible, float zIndex) {
+      this.isVisible = isVisible;
+      this.zIndex = zIndex;
+    }
+  }
+
+  /**
+   * A map object with its geometry ({@code Point}, {@code Polyline} or {@code Polygon}) and style
+   */
+  public static class ObjectState {
+    public final Object hashCode;
+    public final Object geometry;
+    public final Object style;
+    public final String groupId;
+
+    ObjectState(Object hashCode, Object geometry, Object style, String groupId) {
+      this.hashCode = hashCode;
+      this.geometry = geometry;
+      this.style = style;
+      this.groupId = groupId;
+    }
+  }
+
+  public YandexMapState(
+    CameraPosition cameraPosition,
+    YandexStyleRegistry styleRegistry,
+    YandexIconRegistry iconRegistry
+  ) {
+    this.cameraPosition = cameraPosition;
+    this.styleRegistry = styleRegistry;
+    this.iconRegistry = iconRegistry;
+  }
+
+  public static void save(String key, YandexMapState state) {
+    states.put(key, state);
+  }
+
+  /**
+   * Returns the state saved under {@code key} or {@code null}, the state is removed,
+   * as registries it holds are taken over by the next map view
+   */
+  public static YandexMapState remove(String key) {
+    return states.remove(key);
+  }
+
+  public void addGroup(String groupId, boolean isVisible, float zIndex) {
+    groups.put(groupId, new GroupState(isVisible, zIndex));
+  }
+
+  public void addPlacemark(Object hashCode, Object geometry, Object style, String groupId) {
+    placemarks.add(new ObjectState(hashCode, geometry, style, groupId));
+  }
+
+  public void addPolyline(Object hashCode, Object geometry, Object style, String groupId) {
+    polylines.add(new ObjectState(hashCode, geometry, style, groupId));
+  }
+
+  public void addPolygon(Object hashCode, Object geometry, Object style, String groupId) {
+    polygons.add(new ObjectState(hashCode, geometry, style, groupId));
+  }
+}
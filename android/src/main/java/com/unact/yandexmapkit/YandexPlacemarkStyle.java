@@ -0,0 +1,81 @@
+package com.unact.yandexmapkit;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.PointF;
+
+import com.yandex.mapkit.map.IconStyle;
+import com.yandex.mapkit.map.PlacemarkMapObject;
+import com.yandex.mapkit.map.RotationType;
+import com.yandex.runtime.image.ImageProvider;
+
+import java.util.Map;
+
+import io.flutter.view.FlutterMain;
+
+/**
+ * Placemark style decoded from method call arguments, ready to be applied to a {@link PlacemarkMapObject}.
+ *
+ * Can be created on any thread, icon images are decoded during creation.
+ */
+public class YandexPlacemarkStyle {
+  private final float opacity;
+  private final boolean isDraggable;
+  private final float direction;
+  private final String iconId;
+  private final ImageProvider icon;
+  private final IconStyle iconStyle;
+
+  public YandexPlacemarkStyle(Context context, YandexIconRegistry iconRegistry, Map<String, Object> paramsStyle) {
+    String iconName = (String) paramsStyle.get("iconName");
+    byte[] rawImageData = (byte[]) paramsStyle.get("rawImageData");
+
+    opacity = ((Double) paramsStyle.get("opacity")).floatValue();
+    isDraggable = (Boolean) paramsStyle.get("isDraggable");
+    direction = ((Double) paramsStyle.get("direction")).floatValue();
+    iconId = (String) paramsStyle.get("iconId");
+
+    if (iconId != null) {
+      icon = iconRegistry.get(iconId);
+    } else if (rawImageData != null) {
+      Bitmap bitmapData = BitmapFactory.decodeByteArray(rawImageData, 0, rawImageData.length);
+      icon = ImageProvider.fromBitmap(bitmapData);
+    } else if (iconName != null) {
+      icon = ImageProvider.fromAsset(context, FlutterMain.getLookupKeyForAsset(iconName));
+    } else {
+      icon = null;
+    }
+
+    iconStyle = new IconStyle();
+    iconStyle.setAnchor(
+      new PointF(
+        ((Double) paramsStyle.get("anchorX")).floatValue(),
+        ((Double) paramsStyle.get("anchorY")).floatValue()
+      )
+    );
+    iconStyle.setZIndex(((Double) paramsStyle.get("zIndex")).floatValue());
+    iconStyle.setScale(((Double) paramsStyle.get("scale")).floatValue());
+
+    int rotationType = ((Number) paramsStyle.get("rotationType")).intValue();
+    if (rotationType == RotationType.ROTATE.ordinal()) {
+      iconStyle.setRotationType(RotationType.ROTATE);
+    }
+  }
+
+  public String getIconId() {
+    return iconId;
+  }
+
+  public void applyTo(PlacemarkMapObject placemark) {
+    placemark.setOpacity(opacity);
+    placemark.setDraggable(isDraggable);
+    placemark.setDirection(direction);
+
+    if (icon != null) {
+      placemark.setIcon(icon);
+    }
+
+    placemark.setIconStyle(iconStyle);
+  }
+}
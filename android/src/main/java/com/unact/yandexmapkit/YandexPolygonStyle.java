@@ -0,0 +1,26 @@
+package com.unact.yandexmapkit;
+
+import com.yandex.mapkit.map.PolygonMapObject;
+
+import java.util.Map;
+
+/**
+ * Polygon style decoded from method call arguments, ready to be applied to a {@link PolygonMapObject}.
+ */
+public class YandexPolygonStyle {
+  private final float strokeWidth;
+  private final int strokeColor;
+  private final int fillColor;
+
+  public YandexPolygonStyle(Map<String, Object> paramsStyle) {
+    strokeWidth = ((Double) paramsStyle.get("strokeWidth")).floatValue();
+    strokeColor = ((Number) paramsStyle.get("strokeColor")).intValue();
+    fillColor = ((Number) paramsStyle.get("fillColor")).intValue();
+  }
+
+  public void applyTo(PolygonMapObject polygon) {
+    polygon.setStrokeWidth(strokeWidth);
+    polygon.setStrokeColor(strokeColor);
+    polygon.setFillColor(fillColor);
+  }
+}
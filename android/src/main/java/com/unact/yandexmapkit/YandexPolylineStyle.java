@@ -0,0 +1,41 @@
+package com.unact.yandexmapkit;
+
+import com.yandex.mapkit.map.PolylineMapObject;
+
+import java.util.Map;
+
+/**
+ * Polyline style decoded from method call arguments, ready to be applied to a {@link PolylineMapObject}.
+ */
+public class YandexPolylineStyle {
+  private final int strokeColor;
+  private final float strokeWidth;
+  private final int outlineColor;
+  private final float outlineWidth;
+  private final boolean isGeodesic;
+  private final float dashLength;
+  private final float dashOffset;
+  private final float gapLength;
+
+  public YandexPolylineStyle(Map<String, Object> paramsStyle) {
+    outlineColor = ((Number) paramsStyle.get("outlineColor")).intValue();
+    outlineWidth = ((Double) paramsStyle.get("outlineWidth")).floatValue();
+    strokeColor = ((Number) paramsStyle.get("strokeColor")).intValue();
+    strokeWidth = ((Double) paramsStyle.get("strokeWidth")).floatValue();
+    isGeodesic = (boolean) paramsStyle.get("isGeodesic");
+    dashLength = ((Double) paramsStyle.get("dashLength")).floatValue();
+    dashOffset = ((Double) paramsStyle.get("dashOffset")).floatValue();
+    gapLength = ((Double) paramsStyle.get("gapLength")).floatValue();
+  }
+
+  public void applyTo(PolylineMapObject polyline) {
+    polyline.setOutlineColor(outlineColor);
+    polyline.setOutlineWidth(outlineWidth);
+    polyline.setStrokeColor(strokeColor);
+    polyline.setStrokeWidth(strokeWidth);
+    polyline.setGeodesic(isGeodesic);
+    polyline.setDashLength(dashLength);
+    polyline.setDashOffset(dashOffset);
+    polyline.setGapLength(gapLength);
+  }
+}
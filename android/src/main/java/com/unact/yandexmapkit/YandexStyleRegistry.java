@@ -0,0 +1,31 @@
+package com.unact.yandexmapkit;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Prepared map object styles registered under integer ids.
+ *
+ * Styles are registered and looked up while decoding method calls on the background thread.
+ */
+public class YandexStyleRegistry {
+  private final Map<Integer, Object> styles = new ConcurrentHashMap<>();
+
+  public void put(int styleId, Object style) {
+    styles.put(styleId, style);
+  }
+
+  public <T> T get(int styleId, Class<T> type) {
+    Object style = styles.get(styleId);
+
+    if (!type.isInstance(style)) {
+      throw new IllegalArgumentException("No " + type.getSimpleName() + " registered with id " + styleId);
+    }
+
+    return type.cast(style);
+  }
+
+  public void remove(int styleId) {
+    styles.remove(styleId);
+  }
+}
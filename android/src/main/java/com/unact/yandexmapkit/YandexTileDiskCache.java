@@ -0,0 +1,228 @@
+package com.unact.yandexmapkit;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Append-only tile store backed by a pack file and an index file.
+ *
+ * Files are named after a hash of the cache name, so any name is safe to use.
+ * Tile bytes are appended to {@code <hash>.pack}, while {@code <hash>.idx} holds fixed size
+ * (key, offset, length) records. Reads go through a read-only memory mapping of the pack file.
+ * When the pack file grows beyond {@code maxSize} it is compacted, keeping the most recently used tiles.
+ */
+public class YandexTileDiskCache {
+  private static final int INDEX_RECORD_SIZE = 8 + 8 + 4;
+  private static final float COMPACTION_RATIO = 0.75f;
+
+  private final File packFile;
+  private final File indexFile;
+  private final long maxSize;
+  private final LinkedHashMap<Long, long[]> index = new LinkedHashMap<>(256, 0.75f, true);
+
+  private RandomAccessFile pack;
+  private RandomAccessFile indexOut;
+  private MappedByteBuffer mappedPack;
+
+  public YandexTileDiskCache(File directory, String name, long maxSize) throws IOException {
+    if (!directory.exists() && !directory.mkdirs()) {
+      throw new IOException("Unable to create tile cache directory " + directory);
+    }
+
+    String fileName = fileName(name);
+
+    this.packFile = new File(directory, fileName + ".pack");
+    this.indexFile = new File(directory, fileName + ".idx");
+    this.maxSize = maxSize;
+
+    open();
+  }
+
+  public static long key(int x, int y, int z) {
+    return ((long) z << 58) | ((long) x << 29) | (long) y;
+  }
+
+  public synchronized byte[] get(long key) throws IOException {
+    ensureOpen();
+
+    long[] entry = index.get(key);
+
+    if (entry == null) return null;
+
+    if (mappedPack == null || entry[0] + entry[1] > mappedPack.capacity()) {
+      remap();
+    }
+
+    ByteBuffer tile = mappedPack.duplicate();
+    byte[] data = new byte[(int) entry[1]];
+    tile.position((int) entry[0]);
+    tile.get(data);
+
+    return data;
+  }
+
+  public synchronized void put(long key, byte[] data) throws IOException {
+    ensureOpen();
+
+    long offset = pack.length();
+
+    pack.seek(offset);
+    pack.write(data);
+
+    ByteBuffer record = ByteBuffer.allocate(INDEX_RECORD_SIZE);
+    record.putLong(key).putLong(offset).putInt(data.length);
+    indexOut.seek(indexOut.length());
+    indexOut.write(record.array());
+
+    index.put(key, new long[] { offset, data.length });
+
+    if (pack.length() > maxSize) {
+      compact();
+    }
+  }
+
+  public synchronized void clear() throws IOException {
+    close();
+    packFile.delete();
+    indexFile.delete();
+    open();
+  }
+
+  public synchronized void close() throws IOException {
+    mappedPack = null;
+    index.clear();
+
+    if (pack != null) {
+      pack.close();
+      pack = null;
+    }
+    if (indexOut != null) {
+      indexOut.close();
+      indexOut = null;
+    }
+  }
+
+  private static String fileName(String name) {
+    try {
+      byte[] digest = MessageDigest.getInstance("SHA-1").digest(name.getBytes("UTF-8"));
+      StringBuilder fileName = new StringBuilder(digest.length * 2);
+
+      for (byte b : digest) {
+        fileName.append(String.format("%02x", b & 0xFF));
+      }
+
+      return fileName.toString();
+    } catch (NoSuchAlgorithmException | UnsupportedEncodingException e) {
+      // Both are guaranteed to be available on every platform
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private void ensureOpen() throws IOException {
+    if (pack == null) {
+      throw new IOException("Tile cache " + packFile + " is closed");
+    }
+  }
+
+  private void open() throws IOException {
+    pack = new RandomAccessFile(packFile, "rw");
+    indexOut = new RandomAccessFile(indexFile, "rw");
+
+    readIndex();
+  }
+
+  private void readIndex() throws IOException {
+    long packLength = pack.length();
+    long records = indexOut.length() / INDEX_RECORD_SIZE;
+    ByteBuffer buffer = indexOut.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, records * INDEX_RECORD_SIZE);
+
+    for (long i = 0; i < records; i++) {
+      long key = buffer.getLong();
+      long offset = buffer.getLong();
+      int length = buffer.getInt();
+
+      // Records past the end of the pack file come from an interrupted write and are dropped
+      if (offset + length > packLength) {
+        records = i;
+        break;
+      }
+
+      index.put(key, new long[] { offset, length });
+    }
+
+    indexOut.setLength(records * INDEX_RECORD_SIZE);
+  }
+
+  private void remap() throws IOException {
+    mappedPack = pack.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, pack.length());
+  }
+
+  private void compact() throws IOException {
+    List<Map.Entry<Long, long[]>> entries = new ArrayList<>(index.entrySet());
+    long targetSize = (long) (maxSize * COMPACTION_RATIO);
+    long keptSize = 0;
+    int firstKept = entries.size();
+
+    // Entries are in access order, so the most recently used tiles are at the end
+    while (firstKept > 0 && keptSize + entries.get(firstKept - 1).getValue()[1] <= targetSize) {
+      firstKept--;
+      keptSize += entries.get(firstKept).getValue()[1];
+    }
+
+    File compactedPackFile = new File(packFile.getPath() + ".tmp");
+    File compactedIndexFile = new File(indexFile.getPath() + ".tmp");
+    RandomAccessFile compactedPack = new RandomAccessFile(compactedPackFile, "rw");
+    RandomAccessFile compactedIndex = new RandomAccessFile(compactedIndexFile, "rw");
+
+    try {
+      compactedPack.setLength(0);
+      compactedIndex.setLength(0);
+
+      FileChannel source = pack.getChannel();
+      FileChannel target = compactedPack.getChannel();
+      ByteBuffer record = ByteBuffer.allocate(INDEX_RECORD_SIZE);
+      long offset = 0;
+
+      for (Map.Entry<Long, long[]> entry : entries.subList(firstKept, entries.size())) {
+        long[] value = entry.getValue();
+
+        long transferred = 0;
+
+        while (transferred < value[1]) {
+          transferred += source.transferTo(value[0] + transferred, value[1] - transferred, target);
+        }
+
+        record.clear();
+        record.putLong(entry.getKey()).putLong(offset).putInt((int) value[1]);
+        compactedIndex.write(record.array());
+        offset += value[1];
+      }
+    } finally {
+      compactedPack.close();
+      compactedIndex.close();
+    }
+
+    close();
+
+    // The old index is removed first, so a crash between the renames leaves an empty cache
+    // instead of the old index pointing into the compacted pack file
+    if (!indexFile.delete() || !compactedPackFile.renameTo(packFile) || !compactedIndexFile.renameTo(indexFile)) {
+      packFile.delete();
+      indexFile.delete();
+    }
+
+    // Tiles were written in access order, so reading the index back restores their recency
+    open();
+  }
+}
@@ -0,0 +1,123 @@
+package com.unact.yandexmapkit;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class YandexGeometryCalculatorTest {
+  private static final double EARTH_RADIUS = 6371008.8;
+
+  @Test
+  public void areaOfEmptyRingIsZero() {
+    assertEquals(0, YandexGeometryCalculator.area(new double[0]), 0);
+  }
+
+  @Test
+  public void areaOfDegreeSquare() {
+    double[] ring = { 0, 0, 0, 1, 1, 1, 1, 0 };
+    double expected = EARTH_RADIUS * EARTH_RADIUS * Math.toRadians(1) * Math.sin(Math.toRadians(1));
+
+    assertEquals(expected, YandexGeometryCalculator.area(ring), expected * 1e-9);
+  }
+
+  @Test
+  public void areaDoesNotDependOnRingDirection() {
+    double[] clockwise = { 0, 0, 1, 0, 1, 1, 0, 1 };
+    double[] counterClockwise = { 0, 0, 0, 1, 1, 1, 1, 0 };
+
+    assertEquals(
+      YandexGeometryCalculator.area(counterClockwise),
+      YandexGeometryCalculator.area(clockwise),
+      1e-3
+    );
+  }
+
+  @Test
+  public void areaAcrossAntimeridianTakesShortWay() {
+    double[] ring = { 0, 179.5, 0, -179.5, 1, -179.5, 1, 179.5 };
+    double[] sameRingAtGreenwich = { 0, -0.5, 0, 0.5, 1, 0.5, 1, -0.5 };
+
+    assertEquals(
+      YandexGeometryCalculator.area(sameRingAtGreenwich),
+      YandexGeometryCalculator.area(ring),
+      1e-3
+    );
+  }
+
+  @Test
+  public void containsChecksRing() {
+    double[] ring = { 0, 0, 0, 2, 2, 2, 2, 0 };
+
+    assertTrue(YandexGeometryCalculator.contains(ring, 1, 1));
+    assertFalse(YandexGeometryCalculator.contains(ring, 3, 1));
+    assertFalse(YandexGeometryCalculator.contains(ring, 1, -1));
+  }
+
+  @Test
+  public void degenerateRingsContainNothing() {
+    assertFalse(YandexGeometryCalculator.contains(new double[0], 0, 0));
+    assertFalse(YandexGeometryCalculator.contains(new double[] { 0, 0 }, 0, 0));
+    assertFalse(YandexGeometryCalculator.contains(new double[] { 0, 0, 1, 1 }, 0.5, 0.5));
+  }
+
+  @Test
+  public void parallelForWithoutItemsCallsDone() throws InterruptedException {
+    final AtomicInteger computed = new AtomicInteger();
+    final CountDownLatch done = new CountDownLatch(1);
+
+    YandexGeometryCalculator.parallelFor(0, new YandexGeometryCalculator.Range() {
+      @Override
+      public void compute(int from, int to) {
+        computed.addAndGet(to - from);
+      }
+    }, new Runnable() {
+      @Override
+      public void run() {
+        done.countDown();
+      }
+    });
+
+    assertTrue(done.await(5, TimeUnit.SECONDS));
+    assertEquals(0, computed.get());
+  }
+
+  @Test
+  public void parallelForComputesEveryIndexOnce() throws InterruptedException {
+    // Not a multiple of the range count, so the last ranges are shorter or empty
+    int[] counts = { 1, 15, 16, 17, 1001 };
+
+    for (int count : counts) {
+      final AtomicIntegerArray computed = new AtomicIntegerArray(count);
+      final AtomicInteger doneCalls = new AtomicInteger();
+      final CountDownLatch done = new CountDownLatch(1);
+
+      YandexGeometryCalculator.parallelFor(count, new YandexGeometryCalculator.Range() {
+        @Override
+        public void compute(int from, int to) {
+          for (int i = from; i < to; i++) {
+            computed.incrementAndGet(i);
+          }
+        }
+      }, new Runnable() {
+        @Override
+        public void run() {
+          doneCalls.incrementAndGet();
+          done.countDown();
+        }
+      });
+
+      assertTrue(done.await(5, TimeUnit.SECONDS));
+      for (int i = 0; i < count; i++) {
+        assertEquals("Index " + i + " of " + count, 1, computed.get(i));
+      }
+      assertEquals(1, doneCalls.get());
+    }
+  }
+}
@@ -0,0 +1,99 @@
+package com.unact.yandexmapkit;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class YandexLocationBufferTest {
+  @Test(expected = IllegalArgumentException.class)
+  public void rejectsNonPositiveCapacity() {
+    new YandexLocationBuffer(0);
+  }
+
+  @Test
+  public void drainReturnsFixesInOrder() {
+    YandexLocationBuffer buffer = new YandexLocationBuffer(4);
+
+    buffer.add(1, 2, 3, 4);
+    buffer.add(5, 6, 7, 8);
+
+    assertArrayEquals(new double[] { 1, 2, 3, 4, 5, 6, 7, 8 }, buffer.drain(), 0);
+    assertEquals(0, buffer.size());
+    assertEquals(0, buffer.drain().length);
+  }
+
+  @Test
+  public void fullBufferOverwritesOldestFix() {
+    YandexLocationBuffer buffer = new YandexLocationBuffer(2);
+
+    buffer.add(1, 1, 1, 1);
+    buffer.add(2, 2, 2, 2);
+    assertTrue(buffer.isFull());
+    buffer.add(3, 3, 3, 3);
+
+    assertArrayEquals(new double[] { 2, 2, 2, 2, 3, 3, 3, 3 }, buffer.drain(), 0);
+  }
+
+  @Test
+  public void simplifyHandlesShortTracks() {
+    assertEquals(0, YandexLocationBuffer.simplify(new double[0], 1).length);
+    assertArrayEquals(new boolean[] { true }, YandexLocationBuffer.simplify(track(new double[][] { { 0, 0 } }), 1));
+    assertArrayEquals(
+      new boolean[] { true, true },
+      YandexLocationBuffer.simplify(track(new double[][] { { 0, 0 }, { 0, 0 } }), 1)
+    );
+  }
+
+  @Test
+  public void simplifyDropsFixesWithinTolerance() {
+    // About 1 meter off a 1 kilometer straight line
+    double[] fixes = track(new double[][] { { 0, 0 }, { 0.00001, 0.0045 }, { 0, 0.009 } });
+
+    assertArrayEquals(new boolean[] { true, false, true }, YandexLocationBuffer.simplify(fixes, 5));
+    assertArrayEquals(new boolean[] { true, true, true }, YandexLocationBuffer.simplify(fixes, 0.5));
+  }
+
+  @Test
+  public void simplifyKeepsEveryFixOfLongZigzag() {
+    // Every fix deviates from every chord skipping it, which gives the deepest stack of ranges
+    int count = 5000;
+    double[][] coordinates = new double[count][];
+    for (int i = 0; i < count; i++) {
+      coordinates[i] = new double[] { i % 2 == 0 ? 0 : 0.001, i * 0.0001 };
+    }
+
+    boolean[] kept = YandexLocationBuffer.simplify(track(coordinates), 1);
+
+    for (int i = 0; i < count; i++) {
+      assertTrue("Fix " + i + " is dropped", kept[i]);
+    }
+  }
+
+  @Test
+  public void distanceIsSymmetricAndZeroForSamePoint() {
+    assertEquals(0, YandexLocationBuffer.distance(55.75, 37.62, 55.75, 37.62), 0);
+    assertEquals(
+      YandexLocationBuffer.distance(55.75, 37.62, 59.94, 30.31),
+      YandexLocationBuffer.distance(59.94, 30.31, 55.75, 37.62),
+      1e-6
+    );
+    // A degree of latitude is about 111.2 kilometers
+    assertEquals(111195, YandexLocationBuffer.distance(0, 0, 1, 0), 1);
+    assertFalse(Double.isNaN(YandexLocationBuffer.distance(0, 0, 0, 180)));
+  }
+
+  private static double[] track(double[][] coordinates) {
+    double[] fixes = new double[coordinates.length * YandexLocationBuffer.FIX_SIZE];
+
+    for (int i = 0; i < coordinates.length; i++) {
+      fixes[i * YandexLocationBuffer.FIX_SIZE] = coordinates[i][0];
+      fixes[i * YandexLocationBuffer.FIX_SIZE + 1] = coordinates[i][1];
+      fixes[i * YandexLocationBuffer.FIX_SIZE + 3] = i * 1000;
+    }
+
+    return fixes;
+  }
+}
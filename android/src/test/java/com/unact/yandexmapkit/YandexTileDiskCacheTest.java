@@ -0,0 +1,164 @@
+package com.unact.yandexmapkit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class YandexTileDiskCacheTest {
+  private static final long MAX_SIZE = 100;
+  private static final int TILE_SIZE = 30;
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private File directory;
+  private YandexTileDiskCache cache;
+
+  @Before
+  public void setUp() throws IOException {
+    directory = folder.getRoot();
+    cache = new YandexTileDiskCache(directory, "layer", MAX_SIZE);
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    cache.close();
+  }
+
+  @Test
+  public void getReturnsNullForMissingTile() throws IOException {
+    assertNull(cache.get(YandexTileDiskCache.key(1, 2, 3)));
+  }
+
+  @Test
+  public void reopenKeepsPutTiles() throws IOException {
+    cache.put(1, tile(1));
+    cache.put(2, tile(2));
+    cache.close();
+
+    cache = new YandexTileDiskCache(directory, "layer", MAX_SIZE);
+
+    assertArrayEquals(tile(1), cache.get(1));
+    assertArrayEquals(tile(2), cache.get(2));
+  }
+
+  @Test
+  public void layerIdIsNotUsedAsFileName() throws IOException {
+    cache.close();
+    cache = new YandexTileDiskCache(directory, "../layer/with:unsafe*name", MAX_SIZE);
+    cache.put(1, tile(1));
+
+    assertEquals(4, directory.listFiles().length);
+  }
+
+  @Test
+  public void reopenDropsTruncatedIndexRecords() throws IOException {
+    cache.put(1, tile(1));
+    cache.put(2, tile(2));
+    cache.close();
+
+    truncate(file(".idx"), 5);
+    cache = new YandexTileDiskCache(directory, "layer", MAX_SIZE);
+
+    assertArrayEquals(tile(1), cache.get(1));
+    assertNull(cache.get(2));
+  }
+
+  @Test
+  public void reopenDropsRecordsPastPackEnd() throws IOException {
+    cache.put(1, tile(1));
+    cache.put(2, tile(2));
+    cache.close();
+
+    truncate(file(".pack"), 1);
+    cache = new YandexTileDiskCache(directory, "layer", MAX_SIZE);
+
+    assertArrayEquals(tile(1), cache.get(1));
+    assertNull(cache.get(2));
+  }
+
+  @Test
+  public void compactionKeepsMostRecentlyUsedTiles() throws IOException {
+    cache.put(1, tile(1));
+    cache.put(2, tile(2));
+    cache.put(3, tile(3));
+    cache.get(1);
+    // Grows the pack past MAX_SIZE, only tiles fitting into 75 bytes are kept
+    cache.put(4, tile(4));
+
+    assertArrayEquals(tile(1), cache.get(1));
+    assertArrayEquals(tile(4), cache.get(4));
+    assertNull(cache.get(2));
+    assertNull(cache.get(3));
+    assertEquals(2 * TILE_SIZE, file(".pack").length());
+  }
+
+  @Test
+  public void compactedTilesSurviveReopen() throws IOException {
+    for (int i = 1; i <= 4; i++) {
+      cache.put(i, tile(i));
+    }
+    cache.close();
+
+    cache = new YandexTileDiskCache(directory, "layer", MAX_SIZE);
+
+    assertArrayEquals(tile(3), cache.get(3));
+    assertArrayEquals(tile(4), cache.get(4));
+    assertNull(cache.get(1));
+  }
+
+  @Test
+  public void clearRemovesAllTiles() throws IOException {
+    cache.put(1, tile(1));
+    cache.clear();
+
+    assertNull(cache.get(1));
+    assertEquals(0, file(".pack").length());
+    assertEquals(0, file(".idx").length());
+
+    cache.put(2, tile(2));
+    assertArrayEquals(tile(2), cache.get(2));
+  }
+
+  @Test(expected = IOException.class)
+  public void getAfterCloseFails() throws IOException {
+    cache.close();
+    cache.get(1);
+  }
+
+  private static byte[] tile(int value) {
+    byte[] data = new byte[TILE_SIZE];
+    Arrays.fill(data, (byte) value);
+
+    return data;
+  }
+
+  private File file(String extension) {
+    for (File file : directory.listFiles()) {
+      if (file.getName().endsWith(extension)) return file;
+    }
+
+    throw new AssertionError("No " + extension + " file in " + directory);
+  }
+
+  private static void truncate(File file, int bytes) throws IOException {
+    RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+
+    try {
+      randomAccessFile.setLength(randomAccessFile.length() - bytes);
+    } finally {
+      randomAccessFile.close();
+    }
+  }
+}
@@ -0,0 +1,6 @@
+part of yandex_mapkit;
+
+enum MapObjectImportFormat {
+  geoJson,
+  binary
+}
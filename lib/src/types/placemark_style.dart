@@ -9,6 +9,7 @@ class PlacemarkStyle extends Equatable {
     this.isDraggable = false,
     this.iconName,
     this.rawImageData,
+    this.iconId,
     this.direction = kDirection,
     this.rotationType = RotationType.noRotation,
   });
@@ -38,6 +39,12 @@ class PlacemarkStyle extends Equatable {
   ///
   final Uint8List rawImageData;
 
+  /// Id of an icon registered with [YandexMapController.registerIcon]
+  ///
+  /// Takes precedence over [iconName] and [rawImageData].
+  /// Icon data is sent only once, no matter how many `Placemark`s use it.
+  final String iconId;
+
   static const double kScale = 1.0;
   static const double kZIndex = 0.0;
   static const Point kIconAnchor = Point(latitude: 0.5, longitude: 0.5);
@@ -52,6 +59,7 @@ class PlacemarkStyle extends Equatable {
     opacity,
     isDraggable,
     iconName,
+    iconId,
     rotationType,
     direction
   ];
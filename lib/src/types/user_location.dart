@@ -0,0 +1,26 @@
+part of yandex_mapkit;
+
+class UserLocation extends Equatable {
+  const UserLocation({
+    @required this.point,
+    @required this.accuracy,
+    @required this.time
+  });
+
+  final Point point;
+
+  /// Radius of the accuracy circle in meters
+  final double accuracy;
+
+  final DateTime time;
+
+  @override
+  List<Object> get props => <Object>[
+    point,
+    accuracy,
+    time
+  ];
+
+  @override
+  bool get stringify => true;
+}
@@ -9,6 +9,7 @@ class YandexMap extends StatefulWidget {
     this.onMapLongTap,
     this.onMapSizeChanged,
     this.onMapRendered,
+    this.stateKey,
   }) : super(key: key);
 
   static const String viewType = 'yandex_mapkit/yandex_map';
@@ -37,6 +38,18 @@ class YandexMap extends StatefulWidget {
   /// Called every time a [YandexMap] is long tapped.
   final ArgumentCallback<Point> onMapLongTap;
 
+  /// Key to keep map state under when the map is disposed.
+  ///
+  /// When a [YandexMap] with the same key is created again, map objects, groups,
+  /// registered styles and icons and the camera position are restored natively
+  /// before [YandexMap.onMapCreated] is called, see [YandexMapController.isStateRestored].
+  /// Only a few most recently disposed states are kept.
+  ///
+  /// The key can't be changed after the map is created.
+  ///
+  /// Currently supported only on Android, ignored on other platforms
+  final String stateKey;
+
   @override
   _YandexMapState createState() => _YandexMapState();
 }
@@ -65,9 +78,27 @@ class _YandexMapState extends State<YandexMap> {
     }
   }
 
-  void _onPlatformViewCreated(int id) {
+  @override
+  void didUpdateWidget(YandexMap oldWidget) {
+    super.didUpdateWidget(oldWidget);
+    assert(widget.stateKey == oldWidget.stateKey, 'YandexMap.stateKey can\'t be changed');
+  }
+
+  @override
+  void dispose() {
+    // Saved under the key the native side got on creation, so both halves of the state share it
+    _controller?._saveState();
+
+    super.dispose();
+  }
+
+  Future<void> _onPlatformViewCreated(int id) async {
     _controller = YandexMapController.init(id, this);
 
+    if (widget.stateKey != null && defaultTargetPlatform == TargetPlatform.android) {
+      await _controller._restoreState(widget.stateKey);
+    }
+
     if (widget.onMapCreated != null) {
       widget?.onMapCreated(_controller);
     }
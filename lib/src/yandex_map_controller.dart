@@ -10,6 +10,16 @@ class YandexMapController extends ChangeNotifier {
   static const double kZoom = 15.0;
   static const Color kAccuracyCircleFillColor = Colors.blueGrey;
   static const bool kUserArrowOrientation = true;
+  static const double kZIndex = 0.0;
+  static const double kQueryRadius = 24.0;
+  static const int kMaxTileCacheSize = 64 * 1024 * 1024;
+  static const int kImportBatchSize = 500;
+  static const int kImportedIdOffset = 1 << 48;
+  static const Duration kUserLocationInterval = Duration(seconds: 30);
+  static const int kUserLocationBufferSize = 256;
+  static const double kTrackTolerance = 5.0;
+  static const int _kMaxSavedStates = 4;
+  static final Map<String, _YandexMapControllerState> _savedStates = <String, _YandexMapControllerState>{};
 
   final MethodChannel _channel;
   final _YandexMapState _yandexMapState;
@@ -17,10 +27,21 @@ class YandexMapController extends ChangeNotifier {
   /// Has the native view been rendered
   bool _viewRendered = false;
 
+  bool _stateRestored = false;
+
+  /// Key the native side saves the state under when the map is disposed
+  String _stateKey;
+
   final List<Placemark> placemarks = <Placemark>[];
   final List<Polyline> polylines = <Polyline>[];
   final List<Polygon> polygons = <Polygon>[];
+  final Map<Object, String> _objectGroups = <Object, String>{};
+  Map<Object, int> _styleIds = Map<Object, int>.identity();
+  int _nextStyleId = 0;
+  final Map<int, ArgumentCallback<int>> _importProgressCallbacks = <int, ArgumentCallback<int>>{};
+  int _nextImportId = 0;
   CameraPositionCallback _cameraPositionCallback;
+  ArgumentCallback<List<UserLocation>> _userLocationCallback;
 
   static YandexMapController init(int id, _YandexMapState yandexMapState) {
     final MethodChannel methodChannel = MethodChannel('yandex_mapkit/yandex_map_$id');
@@ -28,6 +49,11 @@ class YandexMapController extends ChangeNotifier {
     return YandexMapController._(methodChannel, yandexMapState);
   }
 
+  /// Whether map objects, groups, styles and icons were restored from a state saved under [YandexMap.stateKey]
+  ///
+  /// If `true`, there is no need to add map objects again
+  bool get isStateRestored => _stateRestored;
+
   /// Set Yandex logo position
   Future<void> logoAlignment({
     @required HorizontalAlignment horizontal,
@@ -84,6 +110,49 @@ class YandexMapController extends ChangeNotifier {
     await _channel.invokeMethod<void>('hideUserLayer');
   }
 
+  /// Starts collecting user locations, shown by [showUserLayer], and sends them to [onUpdate] in batches
+  ///
+  /// Locations are buffered natively and sent every [interval],
+  /// after the user moves [distance] meters from the first buffered location
+  /// or once [bufferSize] locations are buffered, whichever comes first.
+  /// Passing `Duration.zero` as [interval] or `0` as [distance] disables the corresponding condition.
+  ///
+  /// If [trackStyle] is set, a polyline of the user's track is drawn natively,
+  /// simplified so that it deviates from actual locations no more than [trackTolerance] meters.
+  ///
+  /// Calling this again restarts updates with new settings, removing the previous track.
+  ///
+  /// Currently supported only on Android
+  Future<void> enableUserLocationUpdates({
+    @required ArgumentCallback<List<UserLocation>> onUpdate,
+    Duration interval = kUserLocationInterval,
+    double distance = 0.0,
+    int bufferSize = kUserLocationBufferSize,
+    PolylineStyle trackStyle,
+    double trackTolerance = kTrackTolerance
+  }) async {
+    assert(bufferSize > 0, 'bufferSize must be positive');
+
+    _userLocationCallback = onUpdate;
+
+    await _channel.invokeMethod<void>(
+      'enableUserLocationUpdates',
+      <String, dynamic>{
+        'interval': interval.inMilliseconds,
+        'distance': distance,
+        'bufferSize': bufferSize,
+        'trackStyle': trackStyle != null ? _polylineStyleParams(trackStyle)['style'] : null,
+        'trackTolerance': trackTolerance
+      }
+    );
+  }
+
+  /// Stops user location updates, sending buffered locations first, and removes the track
+  Future<void> disableUserLocationUpdates() async {
+    await _channel.invokeMethod<void>('disableUserLocationUpdates');
+    _userLocationCallback = null;
+  }
+
   /// Applies styling to the map
   Future<void> setMapStyle({@required String style}) async {
     await _channel.invokeMethod<void>('setMapStyle', <String, dynamic>{'style': style});
@@ -143,10 +212,13 @@ class YandexMapController extends ChangeNotifier {
   }
 
   /// Does nothing if passed `Placemark` is `null`
-  Future<void> addPlacemark(Placemark placemark) async {
+  ///
+  /// If [groupId] is specified, `Placemark` is added to the corresponding group, see [addGroup]
+  Future<void> addPlacemark(Placemark placemark, {String groupId}) async {
     if (placemark != null) {
-      await _channel.invokeMethod<void>('addPlacemark', _placemarkParams(placemark));
+      await _channel.invokeMethod<void>('addPlacemark', _placemarkParams(placemark, groupId));
       placemarks.add(placemark);
+      _addToGroup(placemark, groupId);
     }
   }
 
@@ -173,40 +245,168 @@ class YandexMapController extends ChangeNotifier {
   /// Does nothing if passed `Placemark` wasn't added before
   Future<void> removePlacemark(Placemark placemark) async {
     if (placemarks.remove(placemark)) {
+      _objectGroups.remove(placemark);
       await _channel.invokeMethod<void>('removePlacemark', <String, dynamic>{'hashCode': placemark.hashCode});
     }
   }
 
   /// Does nothing if passed `Polyline` is `null`
-  Future<void> addPolyline(Polyline polyline) async {
+  ///
+  /// If [groupId] is specified, `Polyline` is added to the corresponding group, see [addGroup]
+  Future<void> addPolyline(Polyline polyline, {String groupId}) async {
     if (polyline != null) {
-      await _channel.invokeMethod<void>('addPolyline', _polylineParams(polyline));
+      await _channel.invokeMethod<void>('addPolyline', _polylineParams(polyline, groupId));
       polylines.add(polyline);
+      _addToGroup(polyline, groupId);
     }
   }
 
   /// Does nothing if passed `Polyline` wasn't added before
   Future<void> removePolyline(Polyline polyline) async {
     if (polylines.remove(polyline)) {
+      _objectGroups.remove(polyline);
       await _channel.invokeMethod<void>('removePolyline', <String, dynamic>{'hashCode': polyline.hashCode});
     }
   }
 
   /// Does nothing if passed `Polygon` is `null`
-  Future<void> addPolygon(Polygon polygon) async {
+  ///
+  /// If [groupId] is specified, `Polygon` is added to the corresponding group, see [addGroup]
+  Future<void> addPolygon(Polygon polygon, {String groupId}) async {
     if (polygon != null) {
-      await _channel.invokeMethod<void>('addPolygon', _polygonParams(polygon));
+      await _channel.invokeMethod<void>('addPolygon', _polygonParams(polygon, groupId));
       polygons.add(polygon);
+      _addToGroup(polygon, groupId);
     }
   }
 
   /// Does nothing if passed `Polygon` wasn't added before
   Future<void> removePolygon(Polygon polygon) async {
     if (polygons.remove(polygon)) {
+      _objectGroups.remove(polygon);
       await _channel.invokeMethod<void>('removePolygon', <String, dynamic>{'hashCode': polygon.hashCode});
     }
   }
 
+  /// Registers a `PlacemarkStyle` on the native side
+  ///
+  /// Afterwards a `Placemark` using this exact [style] instance references it by id
+  /// instead of sending the whole style every time it is added.
+  /// Using `const` styles is an easy way to share one instance between many `Placemark`s.
+  ///
+  /// Currently supported only on Android
+  Future<void> registerPlacemarkStyle(PlacemarkStyle style) async {
+    await _registerStyle('registerPlacemarkStyle', style, _placemarkStyleParams(style));
+  }
+
+  /// Registers a `PolylineStyle` on the native side, see [registerPlacemarkStyle]
+  Future<void> registerPolylineStyle(PolylineStyle style) async {
+    await _registerStyle('registerPolylineStyle', style, _polylineStyleParams(style));
+  }
+
+  /// Registers a `PolygonStyle` on the native side, see [registerPlacemarkStyle]
+  Future<void> registerPolygonStyle(PolygonStyle style) async {
+    await _registerStyle('registerPolygonStyle', style, _polygonStyleParams(style));
+  }
+
+  /// Removes a style registered with [registerPlacemarkStyle], [registerPolylineStyle] or [registerPolygonStyle]
+  ///
+  /// Map objects which are already added keep their appearance
+  Future<void> unregisterStyle(Object style) async {
+    final int styleId = _styleIds.remove(style);
+
+    if (styleId != null) {
+      await _channel.invokeMethod<void>('unregisterStyle', <String, dynamic>{'styleId': styleId});
+    }
+  }
+
+  /// Registers an icon, which can be used by `Placemark`s via [PlacemarkStyle.iconId]
+  ///
+  /// Icon is loaded from [rawImageData] or, if it is `null`, from the asset [assetName].
+  /// The image is decoded once and shared by all `Placemark`s using it.
+  /// Registering an icon with an already used [iconId] replaces it for `Placemark`s added afterwards.
+  ///
+  /// Currently supported only on Android
+  Future<void> registerIcon({
+    @required String iconId,
+    Uint8List rawImageData,
+    String assetName
+  }) async {
+    assert(rawImageData != null || assetName != null);
+
+    await _channel.invokeMethod<void>(
+      'registerIcon',
+      <String, dynamic>{
+        'iconId': iconId,
+        'rawImageData': rawImageData,
+        'assetName': assetName
+      }
+    );
+  }
+
+  /// Unregisters an icon registered with [registerIcon]
+  ///
+  /// `Placemark`s already using the icon keep it, its image is freed once all of them are removed
+  Future<void> unregisterIcon({@required String iconId}) async {
+    await _channel.invokeMethod<void>('unregisterIcon', <String, dynamic>{'iconId': iconId});
+  }
+
+  /// Creates a named group of map objects
+  ///
+  /// Objects are added to a group by passing its [groupId] to [addPlacemark], [addPolyline] or [addPolygon].
+  /// A group is shown, hidden, cleared and ordered as a whole without resending its objects.
+  /// Groups with bigger [zIndex] are drawn above groups with smaller [zIndex].
+  ///
+  /// Currently supported only on Android
+  Future<void> addGroup({
+    @required String groupId,
+    double zIndex = kZIndex,
+    bool isVisible = true
+  }) async {
+    await _channel.invokeMethod<void>(
+      'addGroup',
+      <String, dynamic>{
+        'groupId': groupId,
+        'zIndex': zIndex,
+        'isVisible': isVisible
+      }
+    );
+  }
+
+  /// Removes a group with all of its objects
+  Future<void> removeGroup({@required String groupId}) async {
+    await _channel.invokeMethod<void>('removeGroup', <String, dynamic>{'groupId': groupId});
+    _removeGroupObjects(groupId);
+  }
+
+  /// Removes all objects of a group, keeping the group itself
+  Future<void> clearGroup({@required String groupId}) async {
+    await _channel.invokeMethod<void>('clearGroup', <String, dynamic>{'groupId': groupId});
+    _removeGroupObjects(groupId);
+  }
+
+  /// Shows or hides all objects of a group
+  Future<void> setGroupVisible({@required String groupId, @required bool isVisible}) async {
+    await _channel.invokeMethod<void>(
+      'setGroupVisible',
+      <String, dynamic>{
+        'groupId': groupId,
+        'isVisible': isVisible
+      }
+    );
+  }
+
+  /// Changes the drawing order of a group relative to other groups
+  Future<void> setGroupZIndex({@required String groupId, @required double zIndex}) async {
+    await _channel.invokeMethod<void>(
+      'setGroupZIndex',
+      <String, dynamic>{
+        'groupId': groupId,
+        'zIndex': zIndex
+      }
+    );
+  }
+
   /// Increases current zoom by 1
   Future<void> zoomIn() async {
     await _channel.invokeMethod<void>('zoomIn');
@@ -233,6 +433,218 @@ class YandexMapController extends ChangeNotifier {
     return Point(latitude: point['latitude']as double, longitude: point['longitude']as double);
   }
 
+  /// Returns how many camera and map object commands were dropped since the map was created
+  ///
+  /// Camera moves and map object changes are applied once per frame.
+  /// Camera moves made within one frame are merged into a single move,
+  /// while objects added and removed within one frame are never created.
+  /// Calls making these changes complete as soon as the changes are queued, before they are applied.
+  ///
+  /// Currently supported only on Android
+  Future<int> getCollapsedCommandCount() async {
+    return await _channel.invokeMethod<int>('getCollapsedCommandCount');
+  }
+
+  /// Returns hash codes of map objects near [point]
+  ///
+  /// A `Placemark` or a `Polyline` matches if it is within [radius] screen pixels from [point],
+  /// a `Polygon` matches if it contains [point] or its border is within [radius] screen pixels from it.
+  /// Hidden objects and objects in hidden groups never match.
+  /// Returns an empty list if [point] is not visible on the map.
+  ///
+  /// Currently supported only on Android
+  Future<List<int>> queryObjectsAt({@required Point point, double radius = kQueryRadius}) async {
+    return await _channel.invokeMethod<Int64List>(
+      'queryObjectsAt',
+      <String, dynamic>{
+        'point': <String, dynamic>{
+          'latitude': point.latitude,
+          'longitude': point.longitude,
+        },
+        'radius': radius
+      }
+    );
+  }
+
+  /// Returns hash codes of map objects with bounding boxes intersecting area
+  /// inside [southWestPoint] and [northEastPoint]
+  ///
+  /// Hidden objects and objects in hidden groups are skipped.
+  ///
+  /// Currently supported only on Android
+  Future<List<int>> queryObjectsIn({
+    @required Point southWestPoint,
+    @required Point northEastPoint
+  }) async {
+    return await _channel.invokeMethod<Int64List>(
+      'queryObjectsIn',
+      <String, dynamic>{
+        'southWestPoint': <String, dynamic>{
+          'latitude': southWestPoint.latitude,
+          'longitude': southWestPoint.longitude,
+        },
+        'northEastPoint': <String, dynamic>{
+          'latitude': northEastPoint.latitude,
+          'longitude': northEastPoint.longitude,
+        }
+      }
+    );
+  }
+
+  /// Returns geodesic lengths in meters of added `Polyline`s with [hashCodes]
+  ///
+  /// [hashCodes] can contain hash codes of `Polyline`s or ids returned by [importMapObjects].
+  /// Lengths are computed natively in parallel, `double.nan` is returned for unknown hash codes.
+  ///
+  /// Currently supported only on Android
+  Future<List<double>> getPolylineLengths(List<int> hashCodes) async {
+    return await _channel.invokeMethod<Float64List>(
+      'getPolylineLengths',
+      <String, dynamic>{'hashCodes': Int64List.fromList(hashCodes)}
+    );
+  }
+
+  /// Returns geodesic areas in square meters of added `Polygon`s with [hashCodes], see [getPolylineLengths]
+  ///
+  /// Currently supported only on Android
+  Future<List<double>> getPolygonAreas(List<int> hashCodes) async {
+    return await _channel.invokeMethod<Float64List>(
+      'getPolygonAreas',
+      <String, dynamic>{'hashCodes': Int64List.fromList(hashCodes)}
+    );
+  }
+
+  /// Returns for every point of [points] the index in [hashCodes] of the first added `Polygon` containing it,
+  /// or `-1` if there is no such `Polygon`
+  ///
+  /// Checks are computed natively in parallel, unknown hash codes never contain points.
+  ///
+  /// Currently supported only on Android
+  Future<List<int>> findContainingPolygons({
+    @required List<Point> points,
+    @required List<int> hashCodes
+  }) async {
+    final Float64List packedPoints = Float64List(points.length * 2);
+
+    for (int i = 0; i < points.length; i++) {
+      packedPoints[i * 2] = points[i].latitude;
+      packedPoints[i * 2 + 1] = points[i].longitude;
+    }
+
+    return await _channel.invokeMethod<Int32List>(
+      'findContainingPolygons',
+      <String, dynamic>{
+        'points': packedPoints,
+        'hashCodes': Int64List.fromList(hashCodes)
+      }
+    );
+  }
+
+  /// Adds a raster tile layer with tiles loaded from [urlTemplate]
+  ///
+  /// [urlTemplate] can contain `{x}`, `{y}` and `{z}` placeholders and use any scheme,
+  /// supported by the platform, including `file://`.
+  ///
+  /// Loaded tiles are kept in a persistent disk cache bounded by [maxCacheSize] bytes,
+  /// so after app restarts and while offline the layer is shown without loading tiles again.
+  /// Adding a layer with an already used [layerId] replaces it.
+  ///
+  /// Currently supported only on Android
+  Future<void> addTileLayer({
+    @required String layerId,
+    @required String urlTemplate,
+    int maxCacheSize = kMaxTileCacheSize
+  }) async {
+    await _channel.invokeMethod<void>(
+      'addTileLayer',
+      <String, dynamic>{
+        'layerId': layerId,
+        'urlTemplate': urlTemplate,
+        'maxCacheSize': maxCacheSize
+      }
+    );
+  }
+
+  /// Removes a tile layer, keeping its disk cache for later use
+  ///
+  /// Does nothing if a layer with [layerId] wasn't added before
+  Future<void> removeTileLayer({@required String layerId}) async {
+    await _channel.invokeMethod<void>('removeTileLayer', <String, dynamic>{'layerId': layerId});
+  }
+
+  /// Removes all cached tiles of a tile layer and reloads it
+  Future<void> clearTileLayerCache({@required String layerId}) async {
+    await _channel.invokeMethod<void>('clearTileLayerCache', <String, dynamic>{'layerId': layerId});
+  }
+
+  /// Reads map objects from an asset named [assetName] or a file at [filePath] and adds them to the map
+  ///
+  /// Objects are read natively in a single pass and added in batches of [batchSize],
+  /// [onProgress] is called with the number of added objects after every batch.
+  /// Points become `Placemark`s, line strings become `Polyline`s and polygons become `Polygon`s,
+  /// styled with [placemarkStyle], [polylineStyle] and [polygonStyle].
+  ///
+  /// [MapObjectImportFormat.geoJson] files can contain a FeatureCollection, a Feature or a geometry.
+  /// [MapObjectImportFormat.binary] files are memory mapped, the format is described in
+  /// `YandexMapObjectImporter` of the Android plugin.
+  /// An object with an integer id from 0 up to [kImportedIdOffset] gets `kImportedIdOffset + id` as its hash code,
+  /// other objects get generated hash codes. Hash codes of imported objects never clash with hash codes of Dart objects.
+  ///
+  /// Returns hash codes of all imported objects.
+  /// Imported objects are not added to [placemarks], [polylines] and [polygons],
+  /// use [groupId] to hide or remove them and [queryObjectsAt] or [queryObjectsIn] to find them.
+  /// If reading fails, objects added before the error stay on the map.
+  ///
+  /// Currently supported only on Android
+  Future<List<int>> importMapObjects({
+    String assetName,
+    String filePath,
+    MapObjectImportFormat format = MapObjectImportFormat.geoJson,
+    String groupId,
+    PlacemarkStyle placemarkStyle = const PlacemarkStyle(),
+    PolylineStyle polylineStyle = const PolylineStyle(),
+    PolygonStyle polygonStyle = const PolygonStyle(),
+    int batchSize = kImportBatchSize,
+    ArgumentCallback<int> onProgress
+  }) async {
+    assert((assetName == null) != (filePath == null), 'Either assetName or filePath must be provided');
+
+    if (!_styleIds.containsKey(placemarkStyle)) {
+      await registerPlacemarkStyle(placemarkStyle);
+    }
+    if (!_styleIds.containsKey(polylineStyle)) {
+      await registerPolylineStyle(polylineStyle);
+    }
+    if (!_styleIds.containsKey(polygonStyle)) {
+      await registerPolygonStyle(polygonStyle);
+    }
+
+    final int importId = _nextImportId++;
+
+    if (onProgress != null) {
+      _importProgressCallbacks[importId] = onProgress;
+    }
+
+    try {
+      return await _channel.invokeMethod<Int64List>(
+        'importMapObjects',
+        <String, dynamic>{
+          'importId': importId,
+          'assetName': assetName,
+          'filePath': filePath,
+          'format': format.index,
+          'groupId': groupId,
+          'placemarkStyleId': _styleIds[placemarkStyle],
+          'polylineStyleId': _styleIds[polylineStyle],
+          'polygonStyleId': _styleIds[polygonStyle],
+          'batchSize': batchSize
+        }
+      );
+    } finally {
+      _importProgressCallbacks.remove(importId);
+    }
+  }
+
   Future<void> _handleMethodCall(MethodCall call) async {
     switch (call.method) {
       case 'onMapTap':
@@ -250,6 +662,12 @@ class YandexMapController extends ChangeNotifier {
       case 'onCameraPositionChanged':
         _onCameraPositionChanged(call.arguments);
         break;
+      case 'onUserLocationBatch':
+        _onUserLocationBatch(call.arguments);
+        break;
+      case 'onMapObjectsImportProgress':
+        _onMapObjectsImportProgress(call.arguments);
+        break;
       default:
         throw MissingPluginException();
     }
@@ -288,14 +706,118 @@ class YandexMapController extends ChangeNotifier {
     _cameraPositionCallback(arguments);
   }
 
-  Map<String, dynamic> _placemarkParams(Placemark placemark) {
+  void _onUserLocationBatch(dynamic arguments) {
+    final Float64List fixes = arguments['fixes'] as Float64List;
+    final List<UserLocation> locations = <UserLocation>[];
+
+    for (int i = 0; i < fixes.length; i += 4) {
+      locations.add(UserLocation(
+        point: Point(latitude: fixes[i], longitude: fixes[i + 1]),
+        accuracy: fixes[i + 2],
+        time: DateTime.fromMillisecondsSinceEpoch(fixes[i + 3].toInt())
+      ));
+    }
+
+    if (_userLocationCallback != null) {
+      _userLocationCallback(locations);
+    }
+  }
+
+  void _saveState() {
+    if (_stateKey == null) {
+      return;
+    }
+
+    _savedStates.remove(_stateKey);
+    _savedStates[_stateKey] = _YandexMapControllerState(
+      placemarks: List<Placemark>.from(placemarks),
+      polylines: List<Polyline>.from(polylines),
+      polygons: List<Polygon>.from(polygons),
+      objectGroups: Map<Object, String>.from(_objectGroups),
+      styleIds: _styleIds,
+      nextStyleId: _nextStyleId
+    );
+
+    // Native side keeps the same number of states, so both forget the same ones
+    while (_savedStates.length > _kMaxSavedStates) {
+      _savedStates.remove(_savedStates.keys.first);
+    }
+  }
+
+  Future<void> _restoreState(String stateKey) async {
+    final _YandexMapControllerState state = _savedStates.remove(stateKey);
+
+    try {
+      _stateRestored = await _channel.invokeMethod<bool>(
+        'restoreState',
+        <String, dynamic>{
+          'stateKey': stateKey,
+          'restore': state != null
+        }
+      );
+    } on MissingPluginException {
+      // Platforms without state support keep working as if there was no saved state
+      return;
+    }
+
+    _stateKey = stateKey;
+
+    if (_stateRestored) {
+      placemarks.addAll(state.placemarks);
+      polylines.addAll(state.polylines);
+      polygons.addAll(state.polygons);
+      _objectGroups.addAll(state.objectGroups);
+      _styleIds = state.styleIds;
+      _nextStyleId = state.nextStyleId;
+    }
+  }
+
+  void _onMapObjectsImportProgress(dynamic arguments) {
+    final ArgumentCallback<int> onProgress = _importProgressCallbacks[arguments['importId'] as int];
+
+    if (onProgress != null) {
+      onProgress(arguments['count'] as int);
+    }
+  }
+
+  Future<void> _registerStyle(String method, Object style, Map<String, dynamic> styleParams) async {
+    final int styleId = _styleIds[style] ?? _nextStyleId++;
+
+    await _channel.invokeMethod<void>(method, <String, dynamic>{'styleId': styleId}..addAll(styleParams));
+    _styleIds[style] = styleId;
+  }
+
+  /// Returns the registered style id or the full style if [style] wasn't registered
+  Map<String, dynamic> _styleReferenceParams(Object style, Map<String, dynamic> Function() styleParams) {
+    final int styleId = _styleIds[style];
+
+    return styleId != null ? <String, dynamic>{'styleId': styleId} : styleParams();
+  }
+
+  void _addToGroup(Object mapObject, String groupId) {
+    if (groupId != null) {
+      _objectGroups[mapObject] = groupId;
+    }
+  }
+
+  void _removeGroupObjects(String groupId) {
+    bool inGroup(Object mapObject) => _objectGroups[mapObject] == groupId;
+
+    placemarks.removeWhere(inGroup);
+    polylines.removeWhere(inGroup);
+    polygons.removeWhere(inGroup);
+    _objectGroups.removeWhere((Object mapObject, String objectGroupId) => objectGroupId == groupId);
+  }
+
+  Map<String, dynamic> _placemarkParams(Placemark placemark, [String groupId]) {
     return <String, dynamic>{
       'hashCode': placemark.hashCode,
+      'groupId': groupId,
       'point': <String, dynamic>{
         'latitude': placemark.point.latitude,
         'longitude': placemark.point.longitude,
       },
-    }..addAll(_placemarkStyleParams(placemark.style));
+    }..addAll(_styleReferenceParams(placemark.style, () => _placemarkStyleParams(placemark.style)));
   }
 
   Map<String, dynamic> _placemarkStyleParams(PlacemarkStyle style) {
@@ -309,21 +831,23 @@ class YandexMapController extends ChangeNotifier {
         'isDraggable': style.isDraggable,
         'iconName': style.iconName,
         'rawImageData': style.rawImageData,
+        'iconId': style.iconId,
         'rotationType': style.rotationType.index,
         'direction': style.direction
       }
     };
   }
 
-  Map<String, dynamic> _polylineParams(Polyline polyline) {
+  Map<String, dynamic> _polylineParams(Polyline polyline, [String groupId]) {
     final List<Map<String, double>> coordinates = polyline.coordinates.map(
       (Point p) => <String, double>{'latitude': p.latitude, 'longitude': p.longitude}
     ).toList();
 
     return <String, dynamic>{
       'hashCode': polyline.hashCode,
+      'groupId': groupId,
       'coordinates': coordinates
-    }..addAll(_polylineStyleParams(polyline.style));
+    }..addAll(_styleReferenceParams(polyline.style, () => _polylineStyleParams(polyline.style)));
   }
 
   Map<String, dynamic> _polylineStyleParams(PolylineStyle style) {
@@ -341,15 +865,16 @@ class YandexMapController extends ChangeNotifier {
     };
   }
 
-  Map<String, dynamic> _polygonParams(Polygon polygon) {
+  Map<String, dynamic> _polygonParams(Polygon polygon, [String groupId]) {
     final List<Map<String, double>> coordinates = polygon.coordinates.map(
       (Point p) => <String, double>{'latitude': p.latitude, 'longitude': p.longitude}
     ).toList();
 
     return <String, dynamic>{
       'hashCode': polygon.hashCode,
+      'groupId': groupId,
       'coordinates': coordinates,
-    }..addAll(_polygonStyleParams(polygon.style));
+    }..addAll(_styleReferenceParams(polygon.style, () => _polygonStyleParams(polygon.style)));
   }
 
   Map<String, dynamic> _polygonStyleParams(PolygonStyle style) {
@@ -363,3 +888,21 @@ class YandexMapController extends ChangeNotifier {
     };
   }
 }
+
+class _YandexMapControllerState {
+  const _YandexMapControllerState({
+    @required this.placemarks,
+    @required this.polylines,
+    @required this.polygons,
+    @required this.objectGroups,
+    @required this.styleIds,
+    @required this.nextStyleId
+  });
+
+  final List<Placemark> placemarks;
+  final List<Polyline> polylines;
+  final List<Polygon> polygons;
+  final Map<Object, String> objectGroups;
+  final Map<Object, int> styleIds;
+  final int nextStyleId;
+}
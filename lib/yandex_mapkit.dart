@@ -15,6 +15,7 @@ import 'package:flutter/widgets.dart';
 part 'src/types/alignment.dart';
 part 'src/types/callbacks.dart';
 part 'src/types/map_animation.dart';
+part 'src/types/map_object_import_format.dart';
 part 'src/types/map_size.dart';
 part 'src/types/rotation_type.dart';
 part 'src/types/placemark_style.dart';
@@ -25,6 +26,7 @@ part 'src/types/polygon.dart';
 part 'src/types/polyline_style.dart';
 part 'src/types/polyline.dart';
 part 'src/types/suggest_item.dart';
+part 'src/types/user_location.dart';
 part 'src/types/visible_region.dart';
 part 'src/yandex_map.dart';
 part 'src/yandex_map_controller.dart';